@@ -0,0 +1,63 @@
+package byow.Core;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+/** Generates worlds for many seeds at once on a fork-join pool.
+ *
+ *  Every seed gets its own Engine (see Engine.generate), so the results are
+ *  identical to generating the seeds one after another, whatever the pool
+ *  size or scheduling order. */
+public class BatchGenerator {
+    /** Pool the generation tasks run on. */
+    private final ForkJoinPool pool;
+
+    /** Creates a generator that runs on the common fork-join pool. */
+    public BatchGenerator() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /** Creates a generator that runs on POOL. */
+    public BatchGenerator(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /** Generates the worlds for seeds FROM (inclusive) to TO (exclusive) and
+     *  hands each to SINK as soon as it is done. SINK may be called from
+     *  several threads at once and in any seed order. */
+    public void generate(long from, long to, Consumer<? super GeneratedWorld> sink) {
+        run(LongStream.range(from, to), sink);
+    }
+
+    /** Generates the worlds for SEEDS and hands each to SINK as soon as it is
+     *  done. SINK may be called from several threads at once and in any
+     *  order. */
+    public void generate(long[] seeds, Consumer<? super GeneratedWorld> sink) {
+        run(LongStream.of(seeds), sink);
+    }
+
+    /** Returns the worlds for seeds FROM (inclusive) to TO (exclusive), in
+     *  seed order. */
+    public List<GeneratedWorld> generateAll(long from, long to) {
+        return collect(LongStream.range(from, to));
+    }
+
+    /** Returns the worlds for SEEDS, in the same order as SEEDS. */
+    public List<GeneratedWorld> generateAll(long[] seeds) {
+        return collect(LongStream.of(seeds));
+    }
+
+    /** Generates every seed in SEEDS in parallel on the pool, feeding SINK. */
+    private void run(LongStream seeds, Consumer<? super GeneratedWorld> sink) {
+        pool.submit(() -> seeds.parallel().mapToObj(Engine::generate).forEach(sink)).join();
+    }
+
+    /** Generates every seed in SEEDS in parallel on the pool, keeping order. */
+    private List<GeneratedWorld> collect(LongStream seeds) {
+        return pool.submit(() -> seeds.parallel().mapToObj(Engine::generate)
+                .collect(Collectors.toList())).join();
+    }
+}
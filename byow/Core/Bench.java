@@ -0,0 +1,198 @@
+package byow.Core;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/** A small benchmark harness modelled on JMH, for the cases in Benchmarks.
+ *
+ *  Each benchmark is an operation run back to back for a fixed time per
+ *  iteration: first some warmup iterations that are thrown away, then the
+ *  measured ones. The score is the mean time per operation over the measured
+ *  iterations, and its error is the half-width of a 99.9% confidence
+ *  interval, as JMH reports for its average-time mode. Every value an
+ *  operation returns is folded into a sink so the JIT cannot drop the work.
+ *
+ *  Results can be written as JSON in the layout JMH's -rf json produces, so
+ *  the usual JMH result viewers and diff tools read them. */
+class Bench {
+    /** A benchmarked operation. */
+    interface Op {
+        /** Does one unit of work and returns something derived from it. */
+        Object run() throws Exception;
+    }
+
+    /** The measured result of one benchmark with one set of parameters. */
+    static class Result {
+        /** Name of the benchmark. */
+        final String name;
+        /** Parameters it ran with, in the order given. */
+        final Map<String, String> params;
+        /** Nanoseconds per operation in each measured iteration. */
+        final double[] iterations;
+
+        Result(String name, Map<String, String> params, double[] iterations) {
+            this.name = name;
+            this.params = params;
+            this.iterations = iterations;
+        }
+
+        /** Mean nanoseconds per operation. */
+        double score() {
+            double sum = 0;
+            for (double v : iterations) {
+                sum += v;
+            }
+            return sum / iterations.length;
+        }
+
+        /** Half-width of the 99.9% confidence interval around score(). */
+        double error() {
+            int n = iterations.length;
+            if (n < 2) {
+                return Double.NaN;
+            }
+            double mean = score();
+            double squares = 0;
+            for (double v : iterations) {
+                squares += (v - mean) * (v - mean);
+            }
+            return studentT999(n - 1) * Math.sqrt(squares / (n - 1) / n);
+        }
+    }
+
+    /** Two-sided 99.9% quantiles of Student's t for 1 to 10 degrees of
+     *  freedom; larger counts use the normal quantile. */
+    private static final double[] T999 = {
+        636.619, 31.599, 12.924, 8.610, 6.869, 5.959, 5.408, 5.041, 4.781, 4.587,
+    };
+
+    /** Number of warmup iterations. */
+    private final int warmups;
+    /** Number of measured iterations. */
+    private final int measurements;
+    /** Length of an iteration in nanoseconds. */
+    private final long iterationNanos;
+    /** Results in the order the benchmarks ran. */
+    private final List<Result> results = new ArrayList<>();
+    /** Folds in every value an operation returns. */
+    private int sink;
+
+    /** Creates a harness running WARMUPS warmup and MEASUREMENTS measured
+     *  iterations of ITERATIONMILLIS milliseconds each. */
+    Bench(int warmups, int measurements, long iterationMillis) {
+        if (warmups < 0 || measurements < 1 || iterationMillis < 1) {
+            throw new IllegalArgumentException("need at least one measured iteration");
+        }
+        this.warmups = warmups;
+        this.measurements = measurements;
+        this.iterationNanos = iterationMillis * 1_000_000L;
+    }
+
+    /** Benchmarks OP under NAME with PARAMS, given as name, value pairs,
+     *  prints a line for it and returns the result. */
+    Result run(String name, Op op, String... params) throws Exception {
+        Map<String, String> paramMap = new LinkedHashMap<>();
+        for (int i = 0; i + 1 < params.length; i += 2) {
+            paramMap.put(params[i], params[i + 1]);
+        }
+        for (int i = 0; i < warmups; i++) {
+            iteration(op);
+        }
+        double[] measured = new double[measurements];
+        for (int i = 0; i < measurements; i++) {
+            measured[i] = iteration(op);
+        }
+        Result rv = new Result(name, paramMap, measured);
+        results.add(rv);
+        System.out.printf("%-40s %-28s %14.1f +- %10.1f ns/op%n",
+                name, paramMap.isEmpty() ? "" : paramMap.toString(), rv.score(), rv.error());
+        return rv;
+    }
+
+    /** Runs OP for one iteration and returns its nanoseconds per operation. */
+    private double iteration(Op op) throws Exception {
+        long ops = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            Object value = op.run();
+            sink += System.identityHashCode(value);
+            ops += 1;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < iterationNanos);
+        return (double) elapsed / ops;
+    }
+
+    /** Returns the results of every benchmark run so far. */
+    List<Result> results() {
+        return results;
+    }
+
+    /** Returns the sink, so nothing folded into it is dead. */
+    int sink() {
+        return sink;
+    }
+
+    /** Writes every result so far to FILE as a JMH-style JSON array. */
+    void writeJson(File file) {
+        StringBuilder sb = new StringBuilder("[\n");
+        for (int r = 0; r < results.size(); r++) {
+            Result result = results.get(r);
+            sb.append("    {\n");
+            sb.append("        \"benchmark\" : ").append(quote(Benchmarks.class.getName()
+                    + "." + result.name)).append(",\n");
+            sb.append("        \"mode\" : \"avgt\",\n");
+            sb.append("        \"threads\" : 1,\n");
+            sb.append("        \"forks\" : 1,\n");
+            sb.append("        \"warmupIterations\" : ").append(warmups).append(",\n");
+            sb.append("        \"warmupTime\" : \"").append(iterationNanos / 1_000_000)
+                    .append(" ms\",\n");
+            sb.append("        \"measurementIterations\" : ").append(measurements).append(",\n");
+            sb.append("        \"measurementTime\" : \"").append(iterationNanos / 1_000_000)
+                    .append(" ms\",\n");
+            if (!result.params.isEmpty()) {
+                sb.append("        \"params\" : {\n");
+                int p = 0;
+                for (Map.Entry<String, String> e : result.params.entrySet()) {
+                    sb.append("            ").append(quote(e.getKey())).append(" : ")
+                            .append(quote(e.getValue()));
+                    sb.append(++p < result.params.size() ? ",\n" : "\n");
+                }
+                sb.append("        },\n");
+            }
+            sb.append("        \"primaryMetric\" : {\n");
+            sb.append("            \"score\" : ").append(number(result.score())).append(",\n");
+            sb.append("            \"scoreError\" : ").append(number(result.error()))
+                    .append(",\n");
+            sb.append("            \"scoreUnit\" : \"ns/op\",\n");
+            sb.append("            \"rawData\" : [\n                [\n");
+            for (int i = 0; i < result.iterations.length; i++) {
+                sb.append("                    ").append(number(result.iterations[i]));
+                sb.append(i + 1 < result.iterations.length ? ",\n" : "\n");
+            }
+            sb.append("                ]\n            ]\n        },\n");
+            sb.append("        \"secondaryMetrics\" : {\n        }\n");
+            sb.append(r + 1 < results.size() ? "    },\n" : "    }\n");
+        }
+        sb.append("]\n");
+        Utils.writeContents(file, sb.toString());
+    }
+
+    /** Returns the 99.9% quantile of Student's t with DF degrees of freedom. */
+    private static double studentT999(int df) {
+        return df <= T999.length ? T999[df - 1] : 3.291;
+    }
+
+    /** Returns V as a JSON number, or the string "NaN" JMH writes for one. */
+    private static String number(double v) {
+        return Double.isNaN(v) ? "\"NaN\"" : Double.toString(v);
+    }
+
+    /** Returns S as a JSON string. */
+    private static String quote(String s) {
+        return "\"" + s.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+}
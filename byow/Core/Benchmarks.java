@@ -0,0 +1,251 @@
+package byow.Core;
+
+import byow.TileEngine.TERenderer;
+import byow.TileEngine.TETile;
+
+import java.io.File;
+import java.util.regex.Pattern;
+
+/** Benchmarks for world generation, input replay, persistence and rendering,
+ *  run with the Bench harness.
+ *
+ *  Usage: java byow.Core.Benchmarks [-wi N] [-i N] [-r MILLIS] [-json FILE]
+ *  [REGEX]. -wi and -i set the warmup and measured iterations, -r the length
+ *  of one iteration, and -json a file to write the results to; only the
+ *  benchmarks whose names match REGEX run.
+ *
+ *  The readEngine benchmark saves a game to engine.journal in the working
+ *  directory, so the file there is put back afterwards. The renderFrame
+ *  benchmark draws into an image in memory rather than a window, so it also
+ *  runs without a display, as under -Djava.awt.headless=true. */
+public class Benchmarks {
+    /** Seed every benchmark that is not about generation uses. */
+    private static final long SEED = 2022;
+    /** Moves that walk the avatar around without leaving the start room for long. */
+    private static final String MOVES = "wasdwwddssaa";
+    /** Number of moves in the long input string. */
+    private static final int LONG_MOVES = 10_000;
+
+    /** Harness the benchmarks run in. */
+    private final Bench bench;
+    /** Only benchmarks whose names this matches run. */
+    private final Pattern filter;
+
+    Benchmarks(Bench bench, Pattern filter) {
+        this.bench = bench;
+        this.filter = filter;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int warmups = 3;
+        int iterations = 5;
+        long millis = 1000;
+        File json = null;
+        String regex = ".*";
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-wi":
+                    warmups = Integer.parseInt(args[++i]);
+                    break;
+                case "-i":
+                    iterations = Integer.parseInt(args[++i]);
+                    break;
+                case "-r":
+                    millis = Long.parseLong(args[++i]);
+                    break;
+                case "-json":
+                    json = new File(args[++i]);
+                    break;
+                default:
+                    regex = args[i];
+            }
+        }
+        Bench bench = new Bench(warmups, iterations, millis);
+        new Benchmarks(bench, Pattern.compile(regex)).runAll();
+        if (json != null) {
+            bench.writeJson(json);
+        }
+        // Keeps the sink alive to the end.
+        if (bench.sink() == 42) {
+            System.out.println();
+        }
+    }
+
+    /** Runs every benchmark that passes the filter. */
+    void runAll() throws Exception {
+        createGameworld();
+        interactWithInputString();
+        readEngine();
+        persistence();
+        tiles();
+        renderFrame();
+    }
+
+    /** Returns whether the benchmark NAME should run. */
+    private boolean selected(String name) {
+        return filter.matcher(name).find();
+    }
+
+    /** Generates a fresh world for a new seed on every operation, once per
+     *  generator version. */
+    private void createGameworld() throws Exception {
+        String name = "createGameworld";
+        if (!selected(name)) {
+            return;
+        }
+        for (int version = Engine.GENERATOR_V1; Engine.supportsGenerator(version); version++) {
+            final int v = version;
+            long[] seed = {0};
+            bench.run(name, () -> {
+                Engine engine = new Engine();
+                engine.setGeneratorVersion(v);
+                engine.createGameworld(seed[0]++);
+                return engine;
+            }, "version", Integer.toString(version));
+        }
+    }
+
+    /** Replays a short and a very long input string on a fresh Engine. The
+     *  world comes from WorldCache after the first operation, as it does for
+     *  a player loading the same seed again. */
+    private void interactWithInputString() throws Exception {
+        String name = "interactWithInputString";
+        if (!selected(name)) {
+            return;
+        }
+        String shortInput = "n" + SEED + "s" + MOVES;
+        String longInput = "n" + SEED + "s" + moves(LONG_MOVES);
+        bench.run(name, () -> new Engine().interactWithInputString(shortInput),
+                "moves", Integer.toString(MOVES.length()));
+        bench.run(name, () -> new Engine().interactWithInputString(longInput),
+                "moves", Integer.toString(LONG_MOVES));
+    }
+
+    /** Loads a saved game and replays its moves, with the world either in
+     *  WorldCache or generated again. */
+    private void readEngine() throws Exception {
+        String name = "readEngine";
+        if (!selected(name)) {
+            return;
+        }
+        byte[] saved = Engine.JOURNAL.isFile() ? Utils.readContents(Engine.JOURNAL) : null;
+        try {
+            new Engine().interactWithInputString("n" + SEED + "s" + moves(1000) + ":q");
+            bench.run(name, () -> {
+                Engine engine = new Engine();
+                engine.readEngine();
+                return engine;
+            }, "cache", "warm");
+            bench.run(name, () -> {
+                WorldCache.global().clear();
+                Engine engine = new Engine();
+                engine.readEngine();
+                return engine;
+            }, "cache", "cold");
+        } finally {
+            if (saved != null) {
+                Utils.writeContents(Engine.JOURNAL, saved);
+            } else {
+                Engine.JOURNAL.delete();
+            }
+        }
+    }
+
+    /** Serializes an Engine to bytes and round trips it through a file. */
+    private void persistence() throws Exception {
+        if (!selected("serialize") && !selected("writeObject") && !selected("readObject")) {
+            return;
+        }
+        Engine engine = new Engine();
+        engine.interactWithInputString("n" + SEED + "s" + MOVES);
+        if (selected("serialize")) {
+            bench.run("serialize", () -> Utils.serialize(engine));
+        }
+        File file = File.createTempFile("engine", ".bench");
+        try {
+            if (selected("writeObject")) {
+                bench.run("writeObject", () -> {
+                    Utils.writeObject(file, engine);
+                    return file;
+                });
+            }
+            if (selected("readObject")) {
+                Utils.writeObject(file, engine);
+                bench.run("readObject", () -> Utils.readObject(file, Engine.class));
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    /** Prints and copies a full-size world. */
+    private void tiles() throws Exception {
+        if (!selected("toString") && !selected("copyOf")) {
+            return;
+        }
+        TETile[][] tiles = Engine.generate(SEED).toTiles();
+        if (selected("toString")) {
+            bench.run("toString", () -> TETile.toString(tiles));
+        }
+        if (selected("copyOf")) {
+            bench.run("copyOf", () -> TETile.copyOf(tiles));
+        }
+    }
+
+    /** Draws a full-size world, with and without line of sight, either in
+     *  full every frame or after a single step of the avatar, which only
+     *  redraws the cells that changed. */
+    private void renderFrame() throws Exception {
+        String name = "renderFrame";
+        if (!selected(name)) {
+            return;
+        }
+        GeneratedWorld world = Engine.generate(SEED);
+        int x = world.spawnX();
+        int y = world.spawnY();
+        TETile[][] tiles = world.toTiles();
+        TETile[][] stepped = TETile.copyOf(tiles);
+        int[][] sides = {{0, 1}, {1, 0}, {0, -1}, {-1, 0}};
+        int nx = x;
+        int ny = y;
+        for (int[] side : sides) {
+            if (world.get(x + side[0], y + side[1]) == WorldGrid.FLOOR) {
+                nx = x + side[0];
+                ny = y + side[1];
+                stepped[x][y] = WorldGrid.tileOf(WorldGrid.FLOOR);
+                stepped[nx][ny] = WorldGrid.tileOf(WorldGrid.AVATAR);
+                break;
+            }
+        }
+        int stepX = nx;
+        int stepY = ny;
+        TERenderer ter = new TERenderer();
+        ter.initializeOffscreen(Engine.WIDTH, Engine.HEIGHT);
+        for (boolean lineOfSight : new boolean[] {false, true}) {
+            bench.run(name, () -> {
+                ter.invalidate();
+                ter.renderFrame(tiles, x, y, lineOfSight);
+                return tiles;
+            }, "lineOfSight", Boolean.toString(lineOfSight), "redraw", "full");
+            boolean[] odd = new boolean[1];
+            bench.run(name, () -> {
+                odd[0] = !odd[0];
+                if (odd[0]) {
+                    ter.renderFrame(stepped, stepX, stepY, lineOfSight);
+                } else {
+                    ter.renderFrame(tiles, x, y, lineOfSight);
+                }
+                return tiles;
+            }, "lineOfSight", Boolean.toString(lineOfSight), "redraw", "step");
+        }
+    }
+
+    /** Returns COUNT moves made by repeating MOVES. */
+    private static String moves(int count) {
+        StringBuilder sb = new StringBuilder(count);
+        while (sb.length() < count) {
+            sb.append(MOVES.charAt(sb.length() % MOVES.length()));
+        }
+        return sb.toString();
+    }
+}
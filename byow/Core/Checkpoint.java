@@ -0,0 +1,45 @@
+package byow.Core;
+
+import java.io.Serializable;
+
+/** The state of a game after a given number of logged moves, small enough
+ *  to save with every game.
+ *
+ *  Tiles are kept only where they differ from the freshly generated world
+ *  of the same seed and generator (coins picked up, the avatar moved), so
+ *  a checkpoint stays a few dozen cells however long the game has run.
+ *  Loading restores the generated world, applies the latest checkpoint and
+ *  replays only the moves logged after it. */
+final class Checkpoint implements Serializable {
+    /** Number of moves in the log when the checkpoint was taken. */
+    final int moves;
+    /** Seed of the world. */
+    final long seed;
+    /** Generator version of the world. */
+    final int version;
+    /** Cells that differ from the generated world, as (index, id) pairs. */
+    final int[] diff;
+    /** X-coordinate of the avatar. */
+    final int playerX;
+    /** Y-coordinate of the avatar. */
+    final int playerY;
+    /** Number of coins collected. */
+    final int coinsCollected;
+    /** Number of moves left. */
+    final int movesLeft;
+    /** State of the Engine's random stream, which teleports draw from. */
+    final long randomState;
+
+    Checkpoint(int moves, long seed, int version, int[] diff, int playerX, int playerY,
+               int coinsCollected, int movesLeft, long randomState) {
+        this.moves = moves;
+        this.seed = seed;
+        this.version = version;
+        this.diff = diff;
+        this.playerX = playerX;
+        this.playerY = playerY;
+        this.coinsCollected = coinsCollected;
+        this.movesLeft = movesLeft;
+        this.randomState = randomState;
+    }
+}
@@ -0,0 +1,228 @@
+package byow.Core;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/** A very large world split into square chunks that are generated
+ *  independently, and only when one of their tiles is first asked for.
+ *
+ *  Each chunk runs the ordinary room-and-hallway generator on its own area
+ *  with a seed derived from (seed, chunkX, chunkY), so a chunk never depends
+ *  on its neighbours. To connect chunks, every edge shared by two chunks gets
+ *  a portal at a position derived from the seed and the edge alone; both
+ *  chunks compute the same position and carve a corridor from it to their
+ *  first room, so the corridors meet at the border. Chunks along the right
+ *  and top edges absorb any remainder, so every chunk is at least CHUNKSIZE
+ *  wide and tall. */
+public class ChunkedWorld {
+    /** Default side length of a chunk in tiles. */
+    public static final int CHUNK_SIZE = 64;
+    /** Smallest chunk side that fits a room with space for portals. */
+    public static final int MIN_CHUNK_SIZE = 16;
+
+    /** Seed of the whole world. */
+    private final long seed;
+    /** Width of the world in tiles. */
+    private final int width;
+    /** Height of the world in tiles. */
+    private final int height;
+    /** Nominal side length of a chunk. */
+    private final int chunkSize;
+    /** Number of chunk columns. */
+    private final int chunksX;
+    /** Number of chunk rows. */
+    private final int chunksY;
+    /** Generated chunks, keyed by chunkKey. */
+    private final Map<Long, WorldGrid> chunks;
+
+    /** Creates a WIDTH x HEIGHT world for SEED with the default chunk size. */
+    public ChunkedWorld(long seed, int width, int height) {
+        this(seed, width, height, CHUNK_SIZE);
+    }
+
+    /** Creates a WIDTH x HEIGHT world for SEED made of CHUNKSIZE chunks. */
+    public ChunkedWorld(long seed, int width, int height, int chunkSize) {
+        if (chunkSize < MIN_CHUNK_SIZE || width < chunkSize || height < chunkSize) {
+            throw new IllegalArgumentException("chunks must be at least "
+                    + MIN_CHUNK_SIZE + " tiles and fit inside the world");
+        }
+        this.seed = seed;
+        this.width = width;
+        this.height = height;
+        this.chunkSize = chunkSize;
+        this.chunksX = width / chunkSize;
+        this.chunksY = height / chunkSize;
+        this.chunks = new HashMap<>();
+    }
+
+    public long seed() {
+        return seed;
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    /** Returns the number of chunks generated so far. */
+    public int chunksGenerated() {
+        return chunks.size();
+    }
+
+    /** Returns the tile id at (X, Y), generating its chunk if needed. */
+    public byte get(int x, int y) {
+        int cx = chunkOf(x, width, chunksX);
+        int cy = chunkOf(y, height, chunksY);
+        return chunk(cx, cy).get(x - cx * chunkSize, y - cy * chunkSize);
+    }
+
+    /** Sets the tile id at (X, Y) to ID, generating its chunk if needed. */
+    public void set(int x, int y, byte id) {
+        int cx = chunkOf(x, width, chunksX);
+        int cy = chunkOf(y, height, chunksY);
+        chunk(cx, cy).set(x - cx * chunkSize, y - cy * chunkSize, id);
+    }
+
+    /** Returns the tiles of chunk (CX, CY), generating it if needed. */
+    public WorldGrid chunk(int cx, int cy) {
+        if (cx < 0 || cx >= chunksX || cy < 0 || cy >= chunksY) {
+            throw new IndexOutOfBoundsException("no chunk (" + cx + ", " + cy + ")");
+        }
+        long key = chunkKey(cx, cy);
+        WorldGrid grid = chunks.get(key);
+        if (grid == null) {
+            grid = generateChunk(seed, cx, cy, chunkWidth(cx), chunkHeight(cy), chunkSize,
+                    cx < chunksX - 1, cy < chunksY - 1, cx > 0, cy > 0);
+            chunks.put(key, grid);
+        }
+        return grid;
+    }
+
+    /** Returns the chunk holding coordinate V of an axis SIZE tiles long
+     *  split into COUNT chunks. */
+    private int chunkOf(int v, int size, int count) {
+        if (v < 0 || v >= size) {
+            throw new IndexOutOfBoundsException("coordinate " + v + " is outside the world");
+        }
+        return Math.min(v / chunkSize, count - 1);
+    }
+
+    /** Width of chunk column CX; the last column absorbs the remainder. */
+    private int chunkWidth(int cx) {
+        return cx == chunksX - 1 ? width - cx * chunkSize : chunkSize;
+    }
+
+    /** Height of chunk row CY; the last row absorbs the remainder. */
+    private int chunkHeight(int cy) {
+        return cy == chunksY - 1 ? height - cy * chunkSize : chunkSize;
+    }
+
+    /** Generates the W x H chunk (CX, CY) of the world for SEED and carves a
+     *  corridor to each requested portal. SIZE is the nominal chunk size the
+     *  portal positions are drawn from. */
+    static WorldGrid generateChunk(long seed, int cx, int cy, int w, int h, int size,
+                                   boolean east, boolean north, boolean west, boolean south) {
+        return layChunk(seed, cx, cy, w, h, size, east, north, west, south, false)
+                .worldGrid();
+    }
+
+    /** Like generateChunk, but also puts coins in the chunk as Engine puts
+     *  them in a world, and returns the chunk's rooms along with its tiles. */
+    static GeneratedWorld generateChunkWorld(long seed, int cx, int cy, int w, int h, int size,
+                                             boolean east, boolean north, boolean west,
+                                             boolean south) {
+        return layChunk(seed, cx, cy, w, h, size, east, north, west, south, true)
+                .snapshot();
+    }
+
+    /** Returns an Engine holding the chunk generateChunk describes, with
+     *  coins if COINS. */
+    private static Engine layChunk(long seed, int cx, int cy, int w, int h, int size,
+                                   boolean east, boolean north, boolean west, boolean south,
+                                   boolean coins) {
+        int attempts = (int) ((long) Engine.ROOM_ATTEMPTS * w * h
+                / (Engine.WIDTH * Engine.HEIGHT));
+        Engine engine = new Engine(w, h, attempts);
+        if (coins) {
+            engine.createLayoutWithCoins(chunkSeed(seed, cx, cy));
+        } else {
+            engine.createLayout(chunkSeed(seed, cx, cy));
+        }
+        GeneratedWorld layout = engine.snapshot();
+        WorldGrid grid = engine.worldGrid();
+        int hubX = layout.roomX(0) + layout.roomWidth(0) / 2;
+        int hubY = layout.roomY(0) + layout.roomHeight(0) / 2;
+        if (east) {
+            carve(grid, w - 1, portal(seed, cx, cy, 0, size), hubX, hubY);
+        }
+        if (north) {
+            carve(grid, portal(seed, cx, cy, 1, size), h - 1, hubX, hubY);
+        }
+        if (west) {
+            carve(grid, 0, portal(seed, cx - 1, cy, 0, size), hubX, hubY);
+        }
+        if (south) {
+            carve(grid, portal(seed, cx, cy - 1, 1, size), 0, hubX, hubY);
+        }
+        return engine;
+    }
+
+    /** Carves an L-shaped corridor from border cell (X0, Y0) to (X1, Y1),
+     *  first straight in from the border and then along the other axis. */
+    private static void carve(WorldGrid grid, int x0, int y0, int x1, int y1) {
+        boolean horizontalFirst = x0 == 0 || x0 == grid.width() - 1;
+        int x = x0;
+        int y = y0;
+        carveCell(grid, x, y);
+        if (horizontalFirst) {
+            while (x != x1) {
+                x += Integer.signum(x1 - x);
+                carveCell(grid, x, y);
+            }
+        }
+        while (y != y1) {
+            y += Integer.signum(y1 - y);
+            carveCell(grid, x, y);
+        }
+        while (x != x1) {
+            x += Integer.signum(x1 - x);
+            carveCell(grid, x, y);
+        }
+    }
+
+    /** Turns (X, Y) into floor, unless it holds a coin, and walls off any
+     *  empty cell around it. */
+    private static void carveCell(WorldGrid grid, int x, int y) {
+        if (grid.get(x, y) != WorldGrid.COIN) {
+            grid.set(x, y, WorldGrid.FLOOR);
+        }
+        for (int i = x - 1; i <= x + 1; i++) {
+            for (int j = y - 1; j <= y + 1; j++) {
+                if (grid.inBounds(i, j) && grid.get(i, j) == WorldGrid.NOTHING) {
+                    grid.set(i, j, WorldGrid.WALL);
+                }
+            }
+        }
+    }
+
+    /** Returns the position along the east (SIDE 0) or north (SIDE 1) edge of
+     *  chunk (CX, CY) where its portal lies. It stays two tiles away from
+     *  the corners so the corridor walls fit. */
+    static int portal(long seed, int cx, int cy, int side, int size) {
+        long h = SplitMix64.mix(chunkSeed(seed, cx, cy) ^ (side + 1) * 0x9E3779B97F4A7C15L);
+        return 2 + (int) Math.floorMod(h, (long) (size - 4));
+    }
+
+    /** Returns the seed chunk (CX, CY) of a world with SEED is generated with. */
+    static long chunkSeed(long seed, int cx, int cy) {
+        return SplitMix64.mix(seed ^ SplitMix64.mix(chunkKey(cx, cy)));
+    }
+
+    /** Packs chunk coordinates CX and CY into a single key. */
+    static long chunkKey(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+    }
+}
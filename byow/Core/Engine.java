@@ -2,15 +2,22 @@ package byow.Core;
 
 import byow.TileEngine.TERenderer;
 import byow.TileEngine.TETile;
-import byow.TileEngine.Tileset;
 import edu.princeton.cs.algs4.StdDraw;
 
 import java.awt.*;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.Reader;
 import java.io.Serializable;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
 import javax.sound.sampled.*;
 
 /** Represents the playing area and all its interactions. */
@@ -34,12 +41,18 @@ public class Engine implements Serializable {
         }
     }
 
+    /** Kept at the value of the first Engine saved, so every save made since
+     *  reads back; readObject copes with the fields that changed. */
+    private static final long serialVersionUID = 63467975230441482L;
     /** Tile renderer used by the Engine. */
     TERenderer ter = new TERenderer();
     /** The current working directory. */
     public static final File CWD = new File(System.getProperty("user.dir"));
-    /** The file storing the Engine object. */
+    /** The file storing the Engine object, where games were saved before
+     *  the journal; read only when there is no journal. */
     public static final File ENGINE = Utils.join(CWD, "engine.txt");
+    /** The journal the saved game is kept in. */
+    public static final File JOURNAL = Utils.join(CWD, "engine.journal");
     /** The directory storing all audio clips. */
     public static final File AUDIO = Utils.join(CWD, "audio");
     /** The directory storing all images. */
@@ -48,16 +61,67 @@ public class Engine implements Serializable {
     public static final int WIDTH = 80;
     /** Height of playable area. */
     public static final int HEIGHT = 30;
+    /** Number of rooms createGameworld tries to place on a WIDTH x HEIGHT area. */
+    public static final int ROOM_ATTEMPTS = 500;
+    /** Moves the avatar is given for each room in the world. */
+    public static final int MOVES_PER_ROOM = 50;
+    /** Moves a teleport costs. */
+    public static final int TELEPORT_COST = 50;
+    /** Ticks a second play takes in input at unless set otherwise. */
+    public static final int TICK_RATE = 60;
+    /** Most frames a second play draws unless set otherwise. */
+    public static final int FRAME_RATE = 60;
+    /** Moves a second the saved game replays at to begin with. */
+    public static final double REPLAY_SPEED = 5;
+    /** Milliseconds between frames of a replay. */
+    public static final int REPLAY_FRAME_MILLIS = 16;
+    /** Number of logged moves between checkpoints taken during play. */
+    public static final int CHECKPOINT_INTERVAL = 4096;
+    /** Original generator: createRoom re-rolls each value until it fits. */
+    public static final int GENERATOR_V1 = 1;
+    /** Generator whose createRoom draws each value straight from its range. */
+    public static final int GENERATOR_V2 = 2;
+    /** Generator that also draws coin spots straight from the floor cells. */
+    public static final int GENERATOR_V3 = 3;
+    /** Version of the world generator new worlds use. Add a new version
+     *  whenever the same seed would generate a different world, so cached and
+     *  saved worlds are told apart. */
+    public static final int GENERATOR_VERSION = GENERATOR_V3;
+    /** Width of this Engine's world. */
+    private int worldWidth;
+    /** Height of this Engine's world. */
+    private int worldHeight;
+    /** Number of rooms createGameworld tries to place. */
+    private int roomAttempts;
+    /** Generator version this Engine's world is built with. Saves made
+     *  before versions were recorded read back as 0, meaning GENERATOR_V1. */
+    private int generatorVersion;
     /** List of all generated rooms in order. */
     private ArrayList<Room> allRooms;
     /** Random object being used by the Engine. */
     private Random currentRandom;
     /** Seed of the world. */
     private long currSeed;
-    /** Array representing the playable area. */
-    private TETile[][] world;
-
-    private String allInput;
+    /** Grid of tile ids representing the playable area. */
+    private WorldGrid world;
+    /** Metrics of the world being generated, or null when MetricsRegistry
+     *  is off. */
+    private transient GenerationMetrics metrics;
+    /** The world as Movement sees it, made on first use. */
+    private transient Movement.Tiles tiles;
+    /** Pathfinder on the current world, made on first use. */
+    private transient Pathfinder pathfinder;
+    /** Every move made in this world, replayed by readEngine. */
+    private MoveLog allInput;
+    /** Latest checkpoint of this game, or null if none was taken. */
+    private Checkpoint checkpoint;
+    /** The world as generated, before any move; fetched on first use. */
+    private transient GeneratedWorld base;
+    /** Journal this game was loaded from or last saved to, or null. */
+    private transient Journal journal;
+    /** Hashes of the state after each move of this game, or null when not
+     *  tracing. */
+    private transient StateTrace trace;
     /** X-coordinate of the avatar. */
     private int playerX;
     /** Y-coordinate of the avatar. */
@@ -82,71 +146,195 @@ public class Engine implements Serializable {
     private boolean mute;
 
     private boolean muteMenuMusic;
+    /** Whether the move path skips sound, images and saving. */
+    private transient boolean headless;
+    /** Ticks a second play takes in input at. */
+    private transient int tickRate = TICK_RATE;
+    /** Most frames a second play draws. */
+    private transient int frameRate = FRAME_RATE;
+    /** Description of the tile the mouse was held over since the last
+     *  frame, or null. */
+    private transient String hover;
 
     public Engine() {
+        this(WIDTH, HEIGHT, ROOM_ATTEMPTS);
+    }
+
+    /** Creates an Engine whose world is WIDTH x HEIGHT and whose generator
+     *  tries ROOMATTEMPTS rooms. Both dimensions must be at least 16 so that
+     *  the largest room fits. */
+    public Engine(int width, int height, int roomAttempts) {
+        if (width < 16 || height < 16) {
+            throw new IllegalArgumentException("world must be at least 16x16");
+        }
+        worldWidth = width;
+        worldHeight = height;
+        this.roomAttempts = roomAttempts;
+        generatorVersion = GENERATOR_VERSION;
         allRooms = new ArrayList<>();
         currentRandom = null;
         currSeed = 0;
-        world = new TETile[WIDTH][HEIGHT];
-        for (int i = 0; i < WIDTH; i++) {
-            for (int j = 0; j < HEIGHT; j++) {
-                world[i][j] = Tileset.NOTHING;
-            }
-        }
+        world = new WorldGrid(worldWidth, worldHeight);
         playerX = 0;
         playerY = 0;
         inPlay = false;
         lineOfSight = false;
-        allInput = "";
+        allInput = new MoveLog();
         jumpScare = false;
         menuMusic = null;
         mute = true;
         muteMenuMusic = false;
     }
 
-    /** Saves Engine object to engine.txt. */
+    /** Reads an Engine back from a stream, field by field so that saves
+     *  from before the world was a WorldGrid, whose world is a TETile[][],
+     *  and from before moves were a MoveLog, whose moves are a String, still
+     *  read. Fields the save predates get their default values. */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        ter = (TERenderer) fields.get("ter", null);
+        worldWidth = fields.get("worldWidth", WIDTH);
+        worldHeight = fields.get("worldHeight", HEIGHT);
+        roomAttempts = fields.get("roomAttempts", ROOM_ATTEMPTS);
+        generatorVersion = fields.get("generatorVersion", 0);
+        // Only ever written from allRooms, so the list holds nothing but Rooms
+        @SuppressWarnings("unchecked")
+        ArrayList<Room> rooms = (ArrayList<Room>) fields.get("allRooms", null);
+        allRooms = rooms;
+        currentRandom = (Random) fields.get("currentRandom", null);
+        currSeed = fields.get("currSeed", 0L);
+        Object savedWorld = fields.get("world", null);
+        if (savedWorld instanceof TETile[][]) {
+            world = WorldGrid.fromTiles((TETile[][]) savedWorld);
+        } else {
+            world = (WorldGrid) savedWorld;
+        }
+        Object savedInput = fields.get("allInput", null);
+        if (savedInput instanceof String) {
+            allInput = MoveLog.of((String) savedInput);
+        } else {
+            allInput = (MoveLog) savedInput;
+        }
+        checkpoint = (Checkpoint) fields.get("checkpoint", null);
+        playerX = fields.get("playerX", 0);
+        playerY = fields.get("playerY", 0);
+        lastKey = fields.get("lastKey", '\0');
+        inPlay = fields.get("inPlay", false);
+        lineOfSight = fields.get("lineOfSight", false);
+        jumpScare = fields.get("jumpScare", false);
+        coinsCollected = fields.get("coinsCollected", 0);
+        coinGoal = fields.get("coinGoal", 0);
+        numOfMoves = fields.get("numOfMoves", 0);
+        mute = fields.get("mute", false);
+        muteMenuMusic = fields.get("muteMenuMusic", false);
+        tickRate = TICK_RATE;
+        frameRate = FRAME_RATE;
+    }
+
+    /** Saves the game to the journal, appending the moves made since it was
+     *  last saved or loaded and a checkpoint of the current state so loading
+     *  it replays nothing. */
     public void saveEngine() {
-        Utils.writeObject(ENGINE, this);
+        if (currentRandom != null) {
+            checkpoint();
+        }
+        if (journal == null || !journal.isFor(currSeed, generatorVersion)) {
+            journal = Journal.create(JOURNAL, currSeed, generatorVersion);
+        }
+        journal.save(allInput, checkpoint, settings());
     }
 
-    /** Reads engine.txt into an object. */
-    public void readEngine() {
-        Engine toUse = Utils.readObject(ENGINE, Engine.class);
-        currSeed = toUse.getCurrSeed();
-        allInput = toUse.getAllInput();
-        lineOfSight = toUse.getLineOfSight();
-        mute = toUse.getMute();
-        world = new TETile[WIDTH][HEIGHT];
-        for (int i = 0; i < WIDTH; i++) {
-            for (int j = 0; j < HEIGHT; j++) {
-                world[i][j] = Tileset.NOTHING;
-            }
+    /** Returns the settings the journal keeps, as Journal bits. */
+    private int settings() {
+        return (lineOfSight ? Journal.LINE_OF_SIGHT : 0) | (mute ? Journal.MUTE : 0)
+                | (jumpScare ? Journal.JUMP_SCARE : 0);
+    }
+
+    /** Returns the saved game: the journal, or else a game saved to
+     *  engine.txt before there was one, which its next save moves to the
+     *  journal. Any engine.txt reads, down to those of the first version of
+     *  the game (see readObject), whose moves replay under GENERATOR_V1. */
+    private static Journal readSave() {
+        if (!JOURNAL.isFile() && ENGINE.isFile()) {
+            Engine old = Utils.readObject(ENGINE, Engine.class);
+            return Journal.create(JOURNAL, old.getCurrSeed(), old.getGeneratorVersion(),
+                    old.getAllInput(), old.checkpoint, old.settings());
         }
+        return Journal.read(JOURNAL);
+    }
+
+    /** Starts the world of the game SAVED, before any of its moves. */
+    private void startFrom(Journal saved) {
+        currSeed = saved.seed();
+        generatorVersion = saved.version();
+        world = new WorldGrid(worldWidth, worldHeight);
         allRooms = new ArrayList<>();
-        createGameworld(currSeed);
+        loadGameworld(currSeed);
+        allInput = saved.moves();
+        journal = saved;
         inPlay = false;
-        char[] characters = allInput.toCharArray();
-        for (char curr : characters) {
-            moveToDirection(Character.toUpperCase(curr));
+    }
+
+    /** Records the current state as the checkpoint for every move logged so
+     *  far. */
+    void checkpoint() {
+        checkpoint = snapshot(allInput.size());
+    }
+
+    /** Returns a checkpoint of the current state, taken after MOVES moves. */
+    Checkpoint snapshot(int moves) {
+        return new Checkpoint(moves, currSeed, generatorVersion,
+                world.diffFrom(generated().tiles()), playerX, playerY, coinsCollected, numOfMoves,
+                ((StateRandom) currentRandom).state());
+    }
+
+    /** Takes a checkpoint if CHECKPOINT_INTERVAL moves were logged since the
+     *  last one. */
+    private void checkpointIfDue() {
+        int since = checkpoint == null ? allInput.size() : allInput.size() - checkpoint.moves;
+        if (since >= CHECKPOINT_INTERVAL) {
+            checkpoint();
         }
     }
 
-    public void readEngine(String r) {
-        Engine toUse = Utils.readObject(ENGINE, Engine.class);
-        currSeed = toUse.getCurrSeed();
-        allInput = toUse.getAllInput();
-        lineOfSight = toUse.getLineOfSight();
-        jumpScare = toUse.getJumpscare();
-        //System.out.println(allInput);
-        world = new TETile[WIDTH][HEIGHT];
-        for (int i = 0; i < WIDTH; i++) {
-            for (int j = 0; j < HEIGHT; j++) {
-                world[i][j] = Tileset.NOTHING;
-            }
+    /** Puts the freshly loaded world in the state SAVED recorded. */
+    void resume(Checkpoint saved) {
+        world.apply(saved.diff);
+        playerX = saved.playerX;
+        playerY = saved.playerY;
+        coinsCollected = saved.coinsCollected;
+        numOfMoves = saved.movesLeft;
+        currentRandom = StateRandom.fromState(saved.randomState);
+        checkpoint = saved;
+        if (trace != null) {
+            trace = new StateTrace(saved.moves);
+        }
+    }
+
+    /** Loads the saved game. */
+    public void readEngine() {
+        Journal saved = readSave();
+        lineOfSight = (saved.settings() & Journal.LINE_OF_SIGHT) != 0;
+        mute = (saved.settings() & Journal.MUTE) != 0;
+        startFrom(saved);
+        // Starts from the latest checkpoint and replays only the moves after it
+        Checkpoint latest = saved.checkpoint();
+        int from = 0;
+        if (latest != null && latest.seed == currSeed && latest.version == generatorVersion
+                && latest.moves <= allInput.size()) {
+            resume(latest);
+            from = latest.moves;
+        }
+        for (int i = from; i < allInput.size(); i++) {
+            moveToDirection(allInput.get(i));
         }
-        allRooms = new ArrayList<>();
-        createGameworld(currSeed);
-        inPlay = false;
+    }
+
+    public void readEngine(String r) {
+        Journal saved = readSave();
+        lineOfSight = (saved.settings() & Journal.LINE_OF_SIGHT) != 0;
+        jumpScare = (saved.settings() & Journal.JUMP_SCARE) != 0;
+        startFrom(saved);
     }
 
     /**
@@ -154,40 +342,11 @@ public class Engine implements Serializable {
      * including inputs from the main menu.
      */
     public void interactWithKeyboard() {
+        InputEvents.install();
         interactWithKeyboardMenu();
 
         inPlay = coinsCollected < coinGoal && numOfMoves > 0;
-
-        while (inPlay) {
-            char last = lastKey;
-            char newCurrent = getKeyPressed();
-            if (Character.toUpperCase(newCurrent) == 'P') {
-                jumpScare = !jumpScare;
-            }
-            if (Character.toUpperCase(newCurrent) == 'M') {
-                mute = !mute;
-            }
-            if (Character.toUpperCase(newCurrent) == 'E') {
-                lineOfSight = !lineOfSight;
-                ter.renderFrame(world, playerX, playerY, lineOfSight);
-                displayScreens("In game");
-                StdDraw.show();
-            }
-            if (last == ':' && Character.toUpperCase(newCurrent) == 'Q') {
-                saveEngine();
-                inPlay = false;
-                System.exit(0);
-            }
-            if (Character.toUpperCase(newCurrent) != 'E'
-                    && Character.toUpperCase(newCurrent) != 'Q') {
-                //System.out.println(newCurrent);
-                moveToDirection(Character.toUpperCase(newCurrent));
-                ter.renderFrame(world, playerX, playerY, lineOfSight);
-                displayScreens("In game");
-                StdDraw.show();
-                inPlay = coinsCollected < coinGoal && numOfMoves > 0;
-            }
-        }
+        playLoop();
         if (coinsCollected == coinGoal) {
             displayScreens("Win");
             StdDraw.show();
@@ -212,6 +371,104 @@ public class Engine implements Serializable {
         }
     }
 
+    /** Sets how many times a second play takes in input and how many
+     *  times a second at most it draws the world. */
+    public void setRates(int ticksPerSecond, int framesPerSecond) {
+        if (ticksPerSecond < 1 || framesPerSecond < 1) {
+            throw new IllegalArgumentException("rates must be positive");
+        }
+        tickRate = ticksPerSecond;
+        frameRate = framesPerSecond;
+    }
+
+    /** Plays until the game is won or lost, in ticks of 1 / tickRate
+     *  seconds. Each tick applies every input that arrived since the last
+     *  one, and the world is drawn after a tick that changed it, at most
+     *  frameRate times a second. A burst of keys, such as a held key
+     *  repeating faster than the world can be drawn, is so applied in one
+     *  go and drawn once rather than drawn key by key while the rest wait.
+     *  With nothing left to draw, play sleeps until there is input. */
+    private void playLoop() {
+        long tickNanos = 1_000_000_000L / tickRate;
+        long frameNanos = 1_000_000_000L / frameRate;
+        long nextTick = System.nanoTime();
+        long nextFrame = nextTick;
+        boolean dirty = false;
+        while (inPlay) {
+            int next = dirty ? InputEvents.NONE : InputEvents.take();
+            for (long left = nextTick - System.nanoTime(); left > 0;
+                 left = nextTick - System.nanoTime()) {
+                LockSupport.parkNanos(left);
+            }
+            long now = System.nanoTime();
+            nextTick = now + tickNanos;
+            if (next == InputEvents.NONE) {
+                next = InputEvents.poll();
+            }
+            // Stops taking input as soon as play ends, leaving the rest for the menu
+            while (next != InputEvents.NONE) {
+                dirty |= playInput(next);
+                if (!inPlay) {
+                    break;
+                }
+                next = InputEvents.poll();
+            }
+            if (dirty && now >= nextFrame) {
+                renderPlay();
+                nextFrame = now + frameNanos;
+                dirty = false;
+            }
+        }
+    }
+
+    /** Applies the input NEXT, a key or InputEvents.MOUSE, during play.
+     *  Returns whether the world needs drawing again. */
+    private boolean playInput(int next) {
+        if (next == InputEvents.MOUSE) {
+            int mouseX = (int) StdDraw.mouseX() - 5;
+            int mouseY = (int) StdDraw.mouseY() - 10;
+            if (StdDraw.isMousePressed() && world.inBounds(mouseX, mouseY)) {
+                hover = world.tile(mouseX, mouseY).description();
+                return true;
+            }
+            return false;
+        }
+        char last = lastKey;
+        char key = Character.toUpperCase(keyTyped((char) next));
+        if (key == 'P') {
+            jumpScare = !jumpScare;
+        }
+        if (key == 'M') {
+            mute = !mute;
+        }
+        if (key == 'E') {
+            lineOfSight = !lineOfSight;
+        }
+        if (last == ':' && key == 'Q') {
+            saveEngine();
+            inPlay = false;
+            System.exit(0);
+        }
+        if (key != 'E' && key != 'Q') {
+            moveToDirection(key);
+            checkpointIfDue();
+            inPlay = coinsCollected < coinGoal && numOfMoves > 0;
+        }
+        return true;
+    }
+
+    /** Draws the world and the game's status, and what the mouse was last
+     *  held over since the last frame. */
+    private void renderPlay() {
+        ter.renderFrame(world.toTiles(), playerX, playerY, lineOfSight);
+        displayScreens("In game");
+        if (hover != null) {
+            displayScreens(hover);
+            hover = null;
+        }
+        StdDraw.show();
+    }
+
     public void interactWithKeyboardMenu() {
         Long seedToUse;
         //Starts Main Menu
@@ -243,7 +500,7 @@ public class Engine implements Serializable {
             }
             seedToUse = Long.valueOf(seedInput);
             currSeed = seedToUse;
-            createGameworld(currSeed);
+            loadGameworld(currSeed);
         }
         if (Character.toUpperCase(current) == 'L') {
             readEngine();
@@ -254,57 +511,117 @@ public class Engine implements Serializable {
         ter.initialize(WIDTH + 10, HEIGHT + 20, 5, 10); //to initialize the board
         if (Character.toUpperCase(current) == 'R') {
             readEngine("r");
-            displayScreens("In game");
-            ter.renderFrame(world, playerX, playerY, false);
-            StdDraw.pause(1000);
-            char[] characters = allInput.toCharArray();
-            for (char curr : characters) {
-                StdDraw.pause(200);
-                moveToDirection(Character.toUpperCase(curr));
-                ter.renderFrame(world, playerX, playerY, false);
-                displayScreens("In game");
-                StdDraw.show();
-            }
+            playReplay();
         }
         if (Character.toUpperCase(current) == 'Q') {
             System.exit(0);
         }
         //set up initial world state
-        ter.renderFrame(world, playerX, playerY, lineOfSight);
+        ter.renderFrame(world.toTiles(), playerX, playerY, lineOfSight);
         displayScreens("In game");
         StdDraw.show();
     }
 
-    public char getKeyPressed() {
+    /** Plays the saved game back from the start at REPLAY_SPEED moves a
+     *  second, then leaves the world at its last move. Space pauses, F plays
+     *  forwards and B backwards, each twice as fast every time it is pressed
+     *  again, 0 to 9 jump to that tenth of the game and Q skips to the end.
+     *  Every frame shows the move the replay should be at by then, so when
+     *  drawing cannot keep up, moves are skipped instead of falling behind. */
+    private void playReplay() {
+        Replay replay = new Replay(cachedWorld(currSeed),
+                allInput);
+        replay.seek(0);
+        showReplay(replay, 0);
+        StdDraw.pause(1000);
+        double speed = REPLAY_SPEED;
+        double at = 0;
+        boolean paused = false;
+        long last = System.nanoTime();
         while (true) {
-            if (StdDraw.isMousePressed()) {
-                int mouseX = (int) StdDraw.mouseX() - 5;
-                int mouseY = (int) StdDraw.mouseY() - 10;
-                if (mouseX >= 0 && mouseX < WIDTH && mouseY >= 0 && mouseY < HEIGHT) {
-                    StdDraw.clear(Color.black);
-                    ter.renderFrame(world, playerX, playerY, lineOfSight);
-                    displayScreens("In game");
-                    displayScreens(world[mouseX][mouseY].description());
-                    StdDraw.show();
+            for (int next = InputEvents.poll(); next != InputEvents.NONE;
+                 next = InputEvents.poll()) {
+                char key = Character.toUpperCase((char) next);
+                if (key == ' ') {
+                    paused = !paused;
+                } else if (key == 'F') {
+                    speed = speed > 0 ? speed * 2 : REPLAY_SPEED;
+                } else if (key == 'B') {
+                    speed = speed < 0 ? speed * 2 : -REPLAY_SPEED;
+                } else if (key >= '0' && key <= '9') {
+                    at = (double) replay.length() * (key - '0') / 10;
+                } else if (key == 'Q') {
+                    at = replay.length();
+                    speed = REPLAY_SPEED;
+                    paused = false;
                 }
             }
-            if (StdDraw.hasNextKeyTyped()) {
-                char newKey = StdDraw.nextKeyTyped();
-                lastKey = newKey;
-                if (inPlay) {
-                    if (Character.toUpperCase(newKey) == 'W'
-                            || Character.toUpperCase(newKey) == 'A'
-                            || Character.toUpperCase(newKey) == 'S'
-                            || Character.toUpperCase(newKey) == 'D'
-                            || Character.toUpperCase(newKey) == 'T') {
-                        allInput += Character.toString(newKey);
+            long now = System.nanoTime();
+            if (!paused) {
+                at += speed * (now - last) / 1e9;
+            }
+            last = now;
+            at = Math.max(0, Math.min(replay.length(), at));
+            replay.seek((int) at);
+            showReplay(replay, paused ? 0 : speed);
+            if (replay.position() == replay.length() && speed > 0 && !paused) {
+                break;
+            }
+            StdDraw.pause(REPLAY_FRAME_MILLIS);
+        }
+        resume(replay.checkpoint());
+    }
+
+    /** Draws the world of REPLAY as it is now, played at SPEED. */
+    private void showReplay(Replay replay, double speed) {
+        coinsCollected = replay.coinsCollected();
+        numOfMoves = replay.movesLeft();
+        ter.renderFrame(replay.world().toTiles(), replay.playerX(), replay.playerY(), false);
+        displayScreens("In game");
+        StdDraw.text(55, 47, "Replay: move " + replay.position() + "/" + replay.length()
+                + (speed == 0 ? ", paused" : String.format(" at %+.0fx", speed / REPLAY_SPEED)));
+        StdDraw.show();
+    }
+
+    /** Waits for the next key typed and returns it, logging it if it is a
+     *  move made in play. While the mouse is held down, shows what is under
+     *  it whenever it moves. */
+    public char getKeyPressed() {
+        while (true) {
+            int next = InputEvents.take();
+            if (next == InputEvents.MOUSE) {
+                if (StdDraw.isMousePressed()) {
+                    int mouseX = (int) StdDraw.mouseX() - 5;
+                    int mouseY = (int) StdDraw.mouseY() - 10;
+                    if (world.inBounds(mouseX, mouseY)) {
+                        ter.renderFrame(world.toTiles(), playerX, playerY, lineOfSight);
+                        displayScreens("In game");
+                        displayScreens(world.tile(mouseX, mouseY).description());
+                        StdDraw.show();
                     }
                 }
-                return newKey;
+                continue;
             }
+            return keyTyped((char) next);
         }
     }
 
+    /** Records NEWKEY as the last key typed, logging it if it is a move
+     *  made in play, and returns it. */
+    private char keyTyped(char newKey) {
+        lastKey = newKey;
+        if (inPlay) {
+            if (Character.toUpperCase(newKey) == 'W'
+                    || Character.toUpperCase(newKey) == 'A'
+                    || Character.toUpperCase(newKey) == 'S'
+                    || Character.toUpperCase(newKey) == 'D'
+                    || Character.toUpperCase(newKey) == 'T') {
+                allInput.append(newKey);
+            }
+        }
+        return newKey;
+    }
+
     public void displayScreens(String in) {
         if (in.equals("Main")) {
             StdDraw.clear(StdDraw.BLACK);
@@ -406,63 +723,153 @@ public class Engine implements Serializable {
         //
         // See proj3.byow.InputDemo for a demo of how you can make a nice clean interface
         // that works for many different input types.
+        runInput(input);
+        return world.toTiles();
+    }
+
+    /** Same as interactWithInputString, but reads the input from INPUT as it
+     *  goes, so inputs of any length take constant memory. The caller
+     *  closes INPUT. */
+    public TETile[][] interactWithInput(Reader input) {
+        runInput(InputCursor.of(input));
+        return world.toTiles();
+    }
+
+    /** Same as interactWithInput(Reader), reading the bytes of INPUT as
+     *  ASCII characters. The caller closes INPUT. */
+    public TETile[][] interactWithInput(InputStream input) {
+        runInput(InputCursor.of(input));
+        return world.toTiles();
+    }
+
+    /** Same as interactWithInput(Reader), reading the bytes of the file FILE
+     *  as ASCII characters through memory mappings. */
+    public TETile[][] interactWithInput(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            runInput(InputCursor.of(channel));
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp);
+        }
+        return world.toTiles();
+    }
+
+    /** Runs INPUT the way interactWithInputString does, without building
+     *  the tiles at the end. */
+    void runInput(String input) {
+        runInput(InputCursor.of(input));
+    }
 
-        // Declaring variables
-        char[] characters = input.toCharArray();
-        int pos = 0;
-        String nToSVal = "";
-
-        // Looping through the input
-        while (Character.toUpperCase(characters[pos]) != 'N'
-                && Character.toUpperCase(characters[pos]) != 'L') {
-            pos += 1;
-        }
-        if (Character.toUpperCase(characters[pos]) == 'N') {
-            pos += 1;
-            while (Character.toUpperCase(characters[pos]) != 'S') {
-                nToSVal += Character.toString(characters[pos]);
-                pos += 1;
+    /** Parses and runs the input from IN one character at a time: an
+     *  optional "N<seed>S" and "L", then moves up to the end or ":Q". */
+    void runInput(InputCursor in) {
+        int c = in.next();
+        while (Character.toUpperCase(c) != 'N' && Character.toUpperCase(c) != 'L') {
+            if (c == InputCursor.END) {
+                throw new IllegalArgumentException("input must start a new game or load one");
             }
-            pos += 1;
-            currSeed = Long.valueOf(nToSVal);
-            createGameworld(currSeed);
+            c = in.next();
         }
-        if (pos < characters.length && Character.toUpperCase(characters[pos]) == 'L') {
+        if (Character.toUpperCase(c) == 'N') {
+            StringBuilder nToSVal = new StringBuilder();
+            c = in.next();
+            while (Character.toUpperCase(c) != 'S') {
+                if (c == InputCursor.END) {
+                    throw new IllegalArgumentException("seed must end with S");
+                }
+                nToSVal.append((char) c);
+                c = in.next();
+            }
+            c = in.next();
+            currSeed = Long.valueOf(nToSVal.toString());
+            loadGameworld(currSeed);
+        }
+        if (Character.toUpperCase(c) == 'L') {
             readEngine();
         }
         // Performing functions
 
-        inPlay = pos < characters.length;
+        inPlay = c != InputCursor.END;
         while (inPlay) {
-            while (pos < characters.length && Character.toUpperCase(characters[pos]) != ':') {
-                if (Character.toUpperCase(characters[pos]) == 'W'
-                        || Character.toUpperCase(characters[pos]) == 'A'
-                        || Character.toUpperCase(characters[pos]) == 'S'
-                        || Character.toUpperCase(characters[pos]) == 'D') {
-                    allInput += Character.toString(characters[pos]);
+            while (c != InputCursor.END && c != ':') {
+                char move = Character.toUpperCase((char) c);
+                if (MoveLog.isMove(move)) {
+                    allInput.append(move);
                 }
-                moveToDirection(Character.toUpperCase(characters[pos]));
-                pos += 1;
+                moveToDirection(move);
+                checkpointIfDue();
+                c = in.next();
             }
-            pos += 1;
-            if (pos < characters.length && Character.toUpperCase(characters[pos]) == 'Q') {
-                saveEngine();
+            c = in.next();
+            if (Character.toUpperCase(c) == 'Q') {
+                if (!headless) {
+                    saveEngine();
+                }
                 inPlay = false;
             }
-            if (pos >= characters.length) {
+            if (c == InputCursor.END) {
                 inPlay = false;
             }
         }
-        return world;
+    }
+
+    /** Turns headless mode on or off. A headless Engine plays no sounds,
+     *  shows no jumpscares and writes no save on ":q", so moves only change
+     *  the world; use it to simulate recorded sessions at full speed. */
+    public void setHeadless(boolean on) {
+        headless = on;
     }
 
     /** Generates all Rooms and hallways in playing area. */
     public void createGameworld(long ourSeed) {
-        currentRandom = new Random(ourSeed);
+        metrics = MetricsRegistry.isEnabled() ? new GenerationMetrics() : null;
+        if (generatorVersion >= GENERATOR_V3) {
+            world.trackFloors();
+        }
+        if (metrics == null) {
+            createLayout(ourSeed);
+            putCharacterInSpot();
+            putCoinsInSpots();
+        } else {
+            long start = System.nanoTime();
+            createLayout(ourSeed);
+            long layoutDone = System.nanoTime();
+            putCharacterInSpot();
+            long spawnDone = System.nanoTime();
+            putCoinsInSpots();
+            metrics.worlds = 1;
+            metrics.layoutNanos = layoutDone - start;
+            metrics.spawnNanos = spawnDone - layoutDone;
+            metrics.coinNanos = System.nanoTime() - spawnDone;
+            MetricsRegistry.global().record(metrics);
+        }
+        world.releaseFloors();
+    }
+
+    /** Returns the metrics of the last world createGameworld generated, or
+     *  null if MetricsRegistry was off at the time. */
+    public GenerationMetrics metrics() {
+        return metrics;
+    }
+
+    /** Generates the Rooms, hallways and coins for OURSEED as
+     *  createGameworld does, leaving out the avatar. */
+    void createLayoutWithCoins(long ourSeed) {
+        if (generatorVersion >= GENERATOR_V3) {
+            world.trackFloors();
+        }
+        createLayout(ourSeed);
+        putCoinsInSpots();
+        world.releaseFloors();
+    }
+
+    /** Generates only the Rooms and hallways for OURSEED, leaving out the
+     *  avatar and the coins. */
+    void createLayout(long ourSeed) {
+        currentRandom = new StateRandom(ourSeed);
         Room newRoom = createRoom();
         putRoomOnBoard(newRoom);
 
-        for (int i = 0; i < 500; i++) {
+        for (int i = 0; i < roomAttempts; i++) {
             newRoom = createRoom();
             if (checkRoomValid(newRoom)) {
                 int randomRoom = currentRandom.nextInt(allRooms.size());
@@ -470,31 +877,180 @@ public class Engine implements Serializable {
                     putRoomOnBoard(newRoom);
                     buildHall(allRooms.get(randomRoom), newRoom);
                 }
+            } else if (metrics != null) {
+                metrics.roomRejections += 1;
             }
         }
 
-        putCharacterInSpot();
-        putCoinsInSpots();
+        world.releaseIndex();
+    }
+
+    /** Generates the world for SEED on a fresh Engine and returns a snapshot
+     *  of it. Engines share no mutable state, so this is safe to call from
+     *  many threads at once. */
+    public static GeneratedWorld generate(long seed) {
+        return generate(seed, GENERATOR_VERSION);
+    }
+
+    /** Same as generate(SEED), using generator VERSION. */
+    public static GeneratedWorld generate(long seed, int version) {
+        return generate(seed, version, WIDTH, HEIGHT, ROOM_ATTEMPTS);
+    }
+
+    /** Same as generate(SEED, VERSION), on an Engine whose world is WIDTH x
+     *  HEIGHT and whose generator tries ROOMATTEMPTS rooms. */
+    public static GeneratedWorld generate(long seed, int version, int width, int height,
+                                          int roomAttempts) {
+        Engine e = new Engine(width, height, roomAttempts);
+        e.setGeneratorVersion(version);
+        e.currSeed = seed;
+        e.createGameworld(seed);
+        return e.snapshot();
+    }
+
+    /** Returns a snapshot of the current world, rooms, avatar and coins. */
+    GeneratedWorld snapshot() {
+        int[] rooms = new int[allRooms.size() * 4];
+        for (int i = 0; i < allRooms.size(); i++) {
+            Room room = allRooms.get(i);
+            rooms[4 * i] = room.xCoord;
+            rooms[4 * i + 1] = room.yCoord;
+            rooms[4 * i + 2] = room.height;
+            rooms[4 * i + 3] = room.width;
+        }
+        int[] coins = new int[coinGoal * 2];
+        int k = 0;
+        for (int x = 0; x < worldWidth && k < coins.length; x++) {
+            for (int y = 0; y < worldHeight && k < coins.length; y++) {
+                if (world.get(x, y) == WorldGrid.COIN) {
+                    coins[k] = x;
+                    coins[k + 1] = y;
+                    k += 2;
+                }
+            }
+        }
+        return new GeneratedWorld(currSeed, generatorVersion, world, rooms, playerX, playerY,
+                Arrays.copyOf(coins, k), ((StateRandom) currentRandom).state());
+    }
+
+    /** Puts this Engine in the state createGameworld would have left it in
+     *  for the seed SAVED was generated from. */
+    void restore(GeneratedWorld saved) {
+        base = saved;
+        checkpoint = null;
+        journal = null;
+        if (trace != null) {
+            trace = new StateTrace(0);
+        }
+        currSeed = saved.seed();
+        generatorVersion = saved.version();
+        world = saved.grid();
+        allRooms = new ArrayList<>();
+        for (int i = 0; i < saved.roomCount(); i++) {
+            allRooms.add(new Room(saved.roomX(i), saved.roomY(i), saved.roomHeight(i),
+                    saved.roomWidth(i)));
+        }
+        playerX = saved.spawnX();
+        playerY = saved.spawnY();
+        coinGoal = saved.coinCount();
+        numOfMoves = allRooms.size() * MOVES_PER_ROOM;
+        currentRandom = StateRandom.fromState(saved.randomState());
+    }
+
+    /** Same as createGameworld, but takes the world from the shared
+     *  WorldCache when this seed has been generated before. */
+    public void loadGameworld(long ourSeed) {
+        restore(cachedWorld(ourSeed));
+    }
+
+    /** Returns the world this Engine's generator makes from SEED, from the
+     *  shared WorldCache. */
+    private GeneratedWorld cachedWorld(long seed) {
+        return WorldCache.global().get(seed, generatorVersion, worldWidth, worldHeight,
+                roomAttempts);
+    }
+
+    /** Returns the Pathfinder for the current world. Its distance fields stay
+     *  cached until the world is replaced or its walls change. */
+    public Pathfinder pathfinder() {
+        if (pathfinder == null || pathfinder.grid() != world) {
+            pathfinder = new Pathfinder(world);
+        }
+        return pathfinder;
+    }
+
+    /** Returns the number of moves the avatar needs to reach (X, Y), or
+     *  Pathfinder.UNREACHABLE if it cannot walk there. */
+    public int distanceFromAvatar(int x, int y) {
+        return pathfinder().distance(playerX, playerY, x, y);
+    }
+
+    /** Returns whether the avatar can walk to (X, Y). */
+    public boolean isReachable(int x, int y) {
+        return distanceFromAvatar(x, y) != Pathfinder.UNREACHABLE;
+    }
+
+    /** Returns whether VERSION names a generator this Engine can run. */
+    public static boolean supportsGenerator(int version) {
+        return version >= GENERATOR_V1 && version <= GENERATOR_V3;
+    }
+
+    /** Makes later calls to createGameworld use generator VERSION. */
+    public void setGeneratorVersion(int version) {
+        if (!supportsGenerator(version)) {
+            throw new IllegalArgumentException("unknown generator version " + version);
+        }
+        generatorVersion = version;
     }
 
     /** Creates a random Room to see if it can be generated. */
     private Room createRoom() {
+        if (metrics != null) {
+            metrics.roomCandidates += 1;
+        }
+        if (generatorVersion == GENERATOR_V1) {
+            return createRoomV1();
+        }
+        // Draws each value from exactly the range that fits, so every draw counts
+        int height = 5 + currentRandom.nextInt(9);
+        int width = 5 + currentRandom.nextInt(9);
+        int x = currentRandom.nextInt(worldWidth - width + 1);
+        int y = currentRandom.nextInt(worldHeight - height + 1);
+
+        return new Room(x, y, height, width);
+    }
+
+    /** Creates a random Room the way GENERATOR_V1 did, re-rolling each value
+     *  until it falls in range. */
+    private Room createRoomV1() {
         // Generates position and height/weight of Room
         int height = currentRandom.nextInt(14);
         int width = currentRandom.nextInt(14);
-        int x = currentRandom.nextInt(WIDTH);
-        int y = currentRandom.nextInt(HEIGHT);
+        int x = currentRandom.nextInt(worldWidth);
+        int y = currentRandom.nextInt(worldHeight);
         while (height < 5) {
             height = currentRandom.nextInt(14);
+            if (metrics != null) {
+                metrics.createRoomRetries += 1;
+            }
         }
         while (width < 5) {
             width = currentRandom.nextInt(14);
+            if (metrics != null) {
+                metrics.createRoomRetries += 1;
+            }
         }
-        while (x + width - 1 > WIDTH - 1) {
-            x = currentRandom.nextInt(WIDTH);
+        while (x + width - 1 > worldWidth - 1) {
+            x = currentRandom.nextInt(worldWidth);
+            if (metrics != null) {
+                metrics.createRoomRetries += 1;
+            }
         }
-        while (y + height - 1 > HEIGHT - 1) {
-            y = currentRandom.nextInt(HEIGHT);
+        while (y + height - 1 > worldHeight - 1) {
+            y = currentRandom.nextInt(worldHeight);
+            if (metrics != null) {
+                metrics.createRoomRetries += 1;
+            }
         }
 
         return new Room(x, y, height, width);
@@ -502,15 +1058,9 @@ public class Engine implements Serializable {
 
     /** Checks whether the randomly generated Room is valid. */
     private boolean checkRoomValid(Room currRoom) {
-        // Iterates through all the tiles the Room would take up
-        for (int i = currRoom.xCoord; i < currRoom.xCoord + currRoom.width; i++) {
-            for (int j = currRoom.yCoord; j < currRoom.yCoord + currRoom.height; j++) {
-                if (!world[i][j].equals(Tileset.NOTHING)) {
-                    return false;
-                }
-            }
-        }
-        return true;
+        // Asks the occupancy index about all the tiles the Room would take up
+        return world.isEmpty(currRoom.xCoord, currRoom.yCoord,
+                currRoom.xCoord + currRoom.width - 1, currRoom.yCoord + currRoom.height - 1);
     }
 
     /** Generates Room onto playing area. */
@@ -518,16 +1068,16 @@ public class Engine implements Serializable {
         allRooms.add(currRoom);
         for (int i = currRoom.xCoord; i < currRoom.xCoord + currRoom.width; i++) {
             for (int j = currRoom.yCoord; j < currRoom.yCoord + currRoom.height; j++) {
-                world[i][j] = Tileset.FLOOR;
+                world.set(i, j, WorldGrid.FLOOR);
             }
         }
         for (int i = currRoom.xCoord; i < currRoom.xCoord + currRoom.width; i++) {
-            world[i][currRoom.yCoord] = Tileset.WALL;
-            world[i][currRoom.yCoord + currRoom.height - 1] = Tileset.WALL;
+            world.set(i, currRoom.yCoord, WorldGrid.WALL);
+            world.set(i, currRoom.yCoord + currRoom.height - 1, WorldGrid.WALL);
         }
         for (int i = currRoom.yCoord; i < currRoom.yCoord + currRoom.height; i++) {
-            world[currRoom.xCoord][i] = Tileset.WALL;
-            world[currRoom.xCoord + currRoom.width - 1][i] = Tileset.WALL;
+            world.set(currRoom.xCoord, i, WorldGrid.WALL);
+            world.set(currRoom.xCoord + currRoom.width - 1, i, WorldGrid.WALL);
         }
     }
 
@@ -565,12 +1115,8 @@ public class Engine implements Serializable {
                     return false;
             } */
 
-            for (int i = startX; i <= endX; i++) {
-                if (!world[i][startY].equals(Tileset.NOTHING)
-                        || !world[i][startY + 1].equals(Tileset.NOTHING)
-                        || !world[i][startY - 1].equals(Tileset.NOTHING)) {
-                    return false;
-                }
+            if (!world.isEmpty(startX, startY - 1, endX, startY + 1)) {
+                return rejectHall(GenerationMetrics.HORIZONTAL);
             }
         } else if (verticalCheck(beginHall, endHall)) { //Vertical only
             vals = valsForVerticalCheck(beginHall, endHall, up);
@@ -579,24 +1125,16 @@ public class Engine implements Serializable {
             endY = vals[2];
 
             if (startX == endHall.xCoord + endHall.width - 1) {
-                return false;
+                return rejectHall(GenerationMetrics.VERTICAL);
             }
 
             if (up) {
-                for (int i = startY; i <= endY; i++) {
-                    if (!world[startX][i].equals(Tileset.NOTHING)
-                            || !world[startX + 1][i].equals(Tileset.NOTHING)
-                            || !world[startX - 1][i].equals(Tileset.NOTHING)) {
-                        return false;
-                    }
+                if (!world.isEmpty(startX - 1, startY, startX + 1, endY)) {
+                    return rejectHall(GenerationMetrics.VERTICAL);
                 }
             } else {
-                for (int i = startY; i >= endY; i--) {
-                    if (!world[startX][i].equals(Tileset.NOTHING)
-                            || !world[startX + 1][i].equals(Tileset.NOTHING)
-                            || !world[startX - 1][i].equals(Tileset.NOTHING)) {
-                        return false;
-                    }
+                if (!world.isEmpty(startX - 1, endY, startX + 1, startY)) {
+                    return rejectHall(GenerationMetrics.VERTICAL);
                 }
             }
         } else { //Both horizontal and vertical
@@ -605,11 +1143,21 @@ public class Engine implements Serializable {
             startY = vals[1];
             endX = vals[2];
             endY = vals[3];
-            return hybridHallCheck(startX, startY, endX, endY, up);
+            if (!hybridHallCheck(startX, startY, endX, endY, up)) {
+                return rejectHall(GenerationMetrics.HYBRID);
+            }
         }
         return true;
     }
 
+    /** Counts a hall of TYPE that could not be built and returns false. */
+    private boolean rejectHall(int type) {
+        if (metrics != null) {
+            metrics.hallRejections[type] += 1;
+        }
+        return false;
+    }
+
     /** Generates a hall between the two rooms. */
     public void buildHall(Room r1, Room r2) {
         //Determining begin/end halls
@@ -712,12 +1260,12 @@ public class Engine implements Serializable {
 
     public void horizontalPlacement(int startX, int startY, int endX, int endY) {
         for (int i = startX; i <= endX; i++) {
-            world[i][startY] = Tileset.FLOOR;
-            world[i][startY + 1] = Tileset.WALL;
-            world[i][startY - 1] = Tileset.WALL;
+            world.set(i, startY, WorldGrid.FLOOR);
+            world.set(i, startY + 1, WorldGrid.WALL);
+            world.set(i, startY - 1, WorldGrid.WALL);
         }
-        world[startX - 1][startY] = Tileset.FLOOR;
-        world[endX + 1][startY] = Tileset.FLOOR;
+        world.set(startX - 1, startY, WorldGrid.FLOOR);
+        world.set(endX + 1, startY, WorldGrid.FLOOR);
     }
 
     public boolean verticalCheck(Room beginHall, Room endHall) {
@@ -747,79 +1295,62 @@ public class Engine implements Serializable {
     public void verticalPlacement(int startX, int startY, int endX, int endY, boolean up) {
         if (up) {
             for (int i = startY; i <= endY; i++) {
-                world[startX][i] = Tileset.FLOOR;
-                world[startX + 1][i] = Tileset.WALL;
-                world[startX - 1][i] = Tileset.WALL;
+                world.set(startX, i, WorldGrid.FLOOR);
+                world.set(startX + 1, i, WorldGrid.WALL);
+                world.set(startX - 1, i, WorldGrid.WALL);
             }
-            world[startX][endY + 1] = Tileset.FLOOR;
-            world[startX][startY - 1] = Tileset.FLOOR;
+            world.set(startX, endY + 1, WorldGrid.FLOOR);
+            world.set(startX, startY - 1, WorldGrid.FLOOR);
         } else {
             for (int i = startY; i >= endY; i--) {
-                world[startX][i] = Tileset.FLOOR;
-                world[startX + 1][i] = Tileset.WALL;
-                world[startX - 1][i] = Tileset.WALL;
+                world.set(startX, i, WorldGrid.FLOOR);
+                world.set(startX + 1, i, WorldGrid.WALL);
+                world.set(startX - 1, i, WorldGrid.WALL);
             }
-            world[startX][endY - 1] = Tileset.FLOOR;
-            world[startX][startY + 1] = Tileset.FLOOR;
+            world.set(startX, endY - 1, WorldGrid.FLOOR);
+            world.set(startX, startY + 1, WorldGrid.FLOOR);
         }
     }
 
     public void horizontalVerticalPlacement(int startX, int startY, int endX,
                                   int endY, boolean up) {
-        world[startX - 1][startY] = Tileset.FLOOR; //changes + 1 to - 1
+        world.set(startX - 1, startY, WorldGrid.FLOOR); //changes + 1 to - 1
         for (int i = startX; i <= endX + 1; i++) {
-            world[i][startY] = Tileset.FLOOR;
-            world[i][startY + 1] = Tileset.WALL;
-            world[i][startY - 1] = Tileset.WALL;
+            world.set(i, startY, WorldGrid.FLOOR);
+            world.set(i, startY + 1, WorldGrid.WALL);
+            world.set(i, startY - 1, WorldGrid.WALL);
         }
-        world[endX + 1][startY] = Tileset.WALL;
+        world.set(endX + 1, startY, WorldGrid.WALL);
         if (up) {
             for (int j = startY + 1; j <= endY; j++) {
-                world[endX][j] = Tileset.FLOOR;
-                world[endX - 1][j] = Tileset.WALL;
-                world[endX + 1][j] = Tileset.WALL;
+                world.set(endX, j, WorldGrid.FLOOR);
+                world.set(endX - 1, j, WorldGrid.WALL);
+                world.set(endX + 1, j, WorldGrid.WALL);
             }
-            world[endX][endY + 1] = Tileset.FLOOR;
+            world.set(endX, endY + 1, WorldGrid.FLOOR);
         } else {
             for (int j = startY - 1; j >= endY; j--) {
-                world[endX][j] = Tileset.FLOOR;
-                world[endX + 1][j] = Tileset.WALL;
-                world[endX - 1][j] = Tileset.WALL;
+                world.set(endX, j, WorldGrid.FLOOR);
+                world.set(endX + 1, j, WorldGrid.WALL);
+                world.set(endX - 1, j, WorldGrid.WALL);
             }
-            world[endX][endY - 1] = Tileset.FLOOR;
+            world.set(endX, endY - 1, WorldGrid.FLOOR);
         }
     }
 
     public boolean hybridHallCheck(int startX, int startY, int endX, int endY, boolean up) {
-        for (int i = startX; i <= endX + 1; i++) {
-            if (!world[i][startY].equals(Tileset.NOTHING)
-                    || !world[i][startY + 1].equals(Tileset.NOTHING)
-                    || !world[i][startY - 1].equals(Tileset.NOTHING)) {
-                return false;
-            }
+        if (!world.isEmpty(startX, startY - 1, endX + 1, startY + 1)) {
+            return false;
         }
         //Going up/down
         if (up) {
-            for (int i = startY + 1; i <= endY; i++) {
-                if (!world[endX][i].equals(Tileset.NOTHING)
-                        || !world[endX + 1][i].equals(Tileset.NOTHING)
-                        || !world[endX - 1][i].equals(Tileset.NOTHING)) {
-                    return false;
-                }
-            }
+            return world.isEmpty(endX - 1, startY + 1, endX + 1, endY);
         } else {
             if (startY == endY - 1) {
                 return false;
             }
-            for (int i = startY - 1; i >= endY; i--) {
-                if (!world[endX][i].equals(Tileset.NOTHING)
-                        || !world[endX + 1][i].equals(Tileset.NOTHING)
-                        || !world[endX - 1][i].equals(Tileset.NOTHING)) {
-                    return false;
-                }
-            }
+            return world.isEmpty(endX - 1, endY, endX + 1, startY - 1);
         }
-        return true;
     }
 
     public int[] valsForHybridHall(Room beginHall, Room endHall, boolean up) {
@@ -842,22 +1373,37 @@ public class Engine implements Serializable {
         Room toStart = allRooms.get(randomRoom.nextInt(allRooms.size()));
         playerX = toStart.xCoord + toStart.width / 2;
         playerY = toStart.yCoord + toStart.height / 2;
-        world[playerX][playerY] = Tileset.AVATAR;
+        world.set(playerX, playerY, WorldGrid.AVATAR);
     }
 
     private void putCoinsInSpots() {
         int coinsInMap = allRooms.size() * 2;
         int count = 0;
         coinGoal = 0;
-        numOfMoves = allRooms.size() * 50;
+        numOfMoves = allRooms.size() * MOVES_PER_ROOM;
         Random randomRoom = new Random(allRooms.size());
+        if (generatorVersion >= GENERATOR_V3) {
+            // Draws straight from the floor index, which hands each spot out once
+            while (count < coinsInMap) {
+                int spot = world.takeFloor(randomRoom);
+                if (spot < 0) {
+                    return;
+                }
+                world.set(spot / worldHeight, spot % worldHeight, WorldGrid.COIN);
+                count += 1;
+                coinGoal += 1;
+            }
+            return;
+        }
         while (count < coinsInMap) {
-            int xVal = randomRoom.nextInt(WIDTH);
-            int yVal = randomRoom.nextInt(HEIGHT);
-            if (world[xVal][yVal].equals(Tileset.FLOOR)) {
-                world[xVal][yVal] = Tileset.COIN;
+            int xVal = randomRoom.nextInt(worldWidth);
+            int yVal = randomRoom.nextInt(worldHeight);
+            if (world.get(xVal, yVal) == WorldGrid.FLOOR) {
+                world.set(xVal, yVal, WorldGrid.COIN);
                 count += 1;
                 coinGoal += 1;
+            } else if (metrics != null) {
+                metrics.coinRetries += 1;
             }
         }
     }
@@ -873,135 +1419,134 @@ public class Engine implements Serializable {
             goRight();
         } else if (moveToMake == 'T') {
             teleport();
+        } else {
+            return;
+        }
+        if (trace != null) {
+            trace.add(stateHash());
         }
     }
 
-    public void goUp() {
-        //check if wall is in position [playerX][playerY + 1]: do not move
-        //check if floor is in position [playerX][playerY + 1]: move up(set new player coords)
-        if (jumpScare) {
-            if (playerY + 1 < HEIGHT && world[playerX][playerY + 1].equals(Tileset.WALL)) {
-                jumpscareImage();
-            }
+    /** Returns a hash of the state of the game: the tiles, the avatar's
+     *  position, the coins collected, the moves left and the random state
+     *  teleports draw from. It costs constant time, as the world keeps its
+     *  Zobrist hash up to date on every tile written. */
+    public long stateHash() {
+        long random = currentRandom instanceof StateRandom
+                ? ((StateRandom) currentRandom).state() : 0;
+        long counters = (long) coinsCollected << 32 | (numOfMoves & 0xFFFFFFFFL);
+        return world.zobristHash()
+                ^ SplitMix64.mix(((long) playerX << 32 | playerY) + 0x9E3779B97F4A7C15L)
+                ^ SplitMix64.mix(counters ^ random * 0xD1B54A32D192ED03L);
+    }
+
+    /** Starts or stops recording the state hash after every move. A trace
+     *  started during a game begins at the next move; starting or loading a
+     *  game starts a new one. */
+    public void setTracing(boolean on) {
+        if (!on) {
+            trace = null;
+        } else if (trace == null) {
+            trace = new StateTrace(allInput.size());
         }
-        if (playerY + 1 < HEIGHT
-                && (world[playerX][playerY + 1].equals(Tileset.FLOOR)
-                || world[playerX][playerY + 1].equals(Tileset.COIN))) {
-            if (world[playerX][playerY + 1].equals(Tileset.COIN)) {
-                coinsCollected += 1;
-                if (!mute) {
-                    coinAudio();
-                }
-            }
-            if (!mute) {
-                stepAudio();
-            }
-            world[playerX][playerY] = Tileset.FLOOR;
-            playerY += 1;
-            world[playerX][playerY] = Tileset.AVATAR;
-            numOfMoves -= 1;
+    }
+
+    /** Returns the hashes recorded since tracing started, or null. */
+    public StateTrace trace() {
+        return trace;
+    }
+
+    /** Returns every move made in this game. */
+    public MoveLog moves() {
+        return allInput;
+    }
+
+    /** Returns the world of this game as its seed generates it. */
+    GeneratedWorld generated() {
+        if (base == null) {
+            base = cachedWorld(currSeed);
         }
-        //might want to render within here
+        return base;
+    }
+
+    public void goUp() {
+        step(0, 1);
     }
 
     public void goDown() {
-        //check if wall is in position [playerX][playerY - 1]: do not move
-        //check if floor is in position [playerX][playerY - 1]: move down(set new player coords)
-        if (jumpScare) {
-            if (playerY - 1 >= 0 && world[playerX][playerY - 1].equals(Tileset.WALL)) {
-                jumpscareImage();
-            }
-        }
-        if (playerY - 1 >= 0
-                && (world[playerX][playerY - 1].equals(Tileset.FLOOR)
-                || world[playerX][playerY - 1].equals(Tileset.COIN))) {
-            if (world[playerX][playerY - 1].equals(Tileset.COIN)) {
-                coinsCollected += 1;
-                if (!mute) {
-                    coinAudio();
-                }
-            }
-            if (!mute) {
-                stepAudio();
-            }
-            world[playerX][playerY] = Tileset.FLOOR;
-            playerY -= 1;
-            world[playerX][playerY] = Tileset.AVATAR;
-            numOfMoves -= 1;
-        }
-        //might want to render within here
+        step(0, -1);
     }
 
     public void goLeft() {
-        //check if wall is in position [playerX - 1][playerY]: do not move
-        //check if floor is in position [playerX - 1][playerY]: move left(set new player coords)
-        if (jumpScare) {
-            if (playerX - 1 >= 0 && world[playerX - 1][playerY].equals(Tileset.WALL)) {
-                jumpscareImage();
-            }
-        }
-        if (playerX - 1 >= 0
-                && (world[playerX - 1][playerY].equals(Tileset.FLOOR)
-                || world[playerX - 1][playerY].equals(Tileset.COIN))) {
-            if (world[playerX - 1][playerY].equals(Tileset.COIN)) {
-                coinsCollected += 1;
-                if (!mute) {
-                    coinAudio();
-                }
-            }
-            if (!mute) {
-                stepAudio();
-            }
-            world[playerX][playerY] = Tileset.FLOOR;
-            playerX -= 1;
-            world[playerX][playerY] = Tileset.AVATAR;
-            numOfMoves -= 1;
-        }
-        //might want to render within here
+        step(-1, 0);
     }
 
     public void goRight() {
-        //check if wall is in position [playerX + 1][playerY]: do not move
-        //check if floor is in position [playerX + 1][playerY]: move right(set new player coords)
-        if (jumpScare) {
-            if (playerX + 1 < WIDTH && world[playerX + 1][playerY].equals(Tileset.WALL)) {
+        step(1, 0);
+    }
+
+    /** Steps the avatar DX, DY tiles by the rules of Movement, playing the
+     *  jump scare if it walks into a wall. */
+    private void step(int dx, int dy) {
+        int x = playerX + dx;
+        int y = playerY + dy;
+        if (jumpScare && !headless) {
+            if (world.inBounds(x, y) && world.get(x, y) == WorldGrid.WALL) {
                 jumpscareImage();
             }
         }
-        if (playerX + 1 < WIDTH
-                && (world[playerX + 1][playerY].equals(Tileset.FLOOR)
-                || world[playerX + 1][playerY].equals(Tileset.COIN))) {
-            if (world[playerX + 1][playerY].equals(Tileset.COIN)) {
+        if (Movement.canEnter(tiles(), x, y)) {
+            if (Movement.moveAvatar(tiles(), playerX, playerY, x, y)) {
                 coinsCollected += 1;
-                if (!mute) {
+                if (!mute && !headless) {
                     coinAudio();
                 }
             }
-            if (!mute) {
+            if (!mute && !headless) {
                 stepAudio();
             }
-            world[playerX][playerY] = Tileset.FLOOR;
-            playerX += 1;
-            world[playerX][playerY] = Tileset.AVATAR;
-            numOfMoves -= 1;
+            playerX = x;
+            playerY = y;
+            numOfMoves -= Movement.STEP_COST;
         }
-        //might want to render within here
     }
 
     public void teleport() {
         Room teleportTo = allRooms.get(currentRandom.nextInt(allRooms.size()));
-        numOfMoves -= 50;
-        if (world[teleportTo.xCoord + teleportTo.width / 2]
-                [teleportTo.yCoord + teleportTo.height / 2] == Tileset.COIN) {
+        numOfMoves -= Movement.TELEPORT_COST;
+        int x = Movement.center(teleportTo.xCoord, teleportTo.width);
+        int y = Movement.center(teleportTo.yCoord, teleportTo.height);
+        if (Movement.moveAvatar(tiles(), playerX, playerY, x, y)) {
             coinsCollected += 1;
-            if (!mute) {
+            if (!mute && !headless) {
                 coinAudio();
             }
         }
-        world[playerX][playerY] = Tileset.FLOOR;
-        playerX = teleportTo.xCoord + teleportTo.width / 2;
-        playerY = teleportTo.yCoord + teleportTo.height / 2;
-        world[playerX][playerY] = Tileset.AVATAR;
+        playerX = x;
+        playerY = y;
+    }
+
+    /** Returns the world as the Tiles Movement moves the avatar over. */
+    private Movement.Tiles tiles() {
+        if (tiles == null) {
+            tiles = new Movement.Tiles() {
+                @Override
+                public boolean inBounds(int x, int y) {
+                    return world.inBounds(x, y);
+                }
+
+                @Override
+                public byte get(int x, int y) {
+                    return world.get(x, y);
+                }
+
+                @Override
+                public void set(int x, int y, byte id) {
+                    world.set(x, y, id);
+                }
+            };
+        }
+        return tiles;
     }
 
     private void jumpscareImage() {
@@ -1010,6 +1555,7 @@ public class Engine implements Serializable {
         StdDraw.show();
         jumpscareAudio();
         StdDraw.pause(3000);
+        ter.invalidate();
     }
 
     private void jumpscareAudio() {
@@ -1086,7 +1632,32 @@ public class Engine implements Serializable {
     }
 
     public String toString() {
-        return TETile.toString(world);
+        return world.toString();
+    }
+
+    /** Grid backing this Engine's world. */
+    WorldGrid worldGrid() {
+        return world;
+    }
+
+    /** X-coordinate of the avatar. */
+    int playerX() {
+        return playerX;
+    }
+
+    /** Y-coordinate of the avatar. */
+    int playerY() {
+        return playerY;
+    }
+
+    /** Number of coins collected. */
+    int coinsCollected() {
+        return coinsCollected;
+    }
+
+    /** Number of moves left. */
+    int movesLeft() {
+        return numOfMoves;
     }
 
     /** Seed of the world. */
@@ -1094,7 +1665,7 @@ public class Engine implements Serializable {
         return currSeed;
     }
 
-    private String getAllInput() {
+    private MoveLog getAllInput() {
         return allInput;
     }
 
@@ -1106,6 +1677,12 @@ public class Engine implements Serializable {
         return jumpScare;
     }
 
+    /** Generator version of the world, treating saves from before versions
+     *  were recorded as GENERATOR_V1. */
+    private int getGeneratorVersion() {
+        return generatorVersion == 0 ? GENERATOR_V1 : generatorVersion;
+    }
+
     private boolean getMute() {
         return mute;
     }
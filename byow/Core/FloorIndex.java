@@ -0,0 +1,57 @@
+package byow.Core;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/** The cells of a grid that have been made FLOOR, kept in a dense array so
+ *  that a uniformly random floor cell can be drawn and taken out in constant
+ *  expected time. Cells are packed as x * height + y, the order WorldGrid
+ *  stores tiles in.
+ *
+ *  Adding a cell is an append guarded by a bitset, so the index grows with
+ *  the number of floor writes rather than the area of the grid. Cells that
+ *  later stop being floor (a wall drawn over a room's edge, say) are not
+ *  looked for on every write: take() drops them when it draws them. */
+class FloorIndex {
+    /** Cells that were floor when added, in cells[0, size). */
+    private int[] cells;
+    /** Number of cells in the array. */
+    private int size;
+    /** One bit per grid cell, set while the cell is in the array. */
+    private final long[] listed;
+
+    /** Creates an empty index for a grid of CELLCOUNT cells. */
+    FloorIndex(int cellCount) {
+        cells = new int[64];
+        listed = new long[(cellCount + 63) >>> 6];
+    }
+
+    /** Adds CELL, which has just been made floor, unless it is listed. */
+    void add(int cell) {
+        long bit = 1L << cell;
+        if ((listed[cell >>> 6] & bit) == 0) {
+            listed[cell >>> 6] |= bit;
+            if (size == cells.length) {
+                cells = Arrays.copyOf(cells, size * 2);
+            }
+            cells[size] = cell;
+            size += 1;
+        }
+    }
+
+    /** Removes a uniformly random cell that is still floor in TILES, drawn
+     *  with RANDOM, and returns it, or returns -1 if there is none. */
+    int take(Random random, byte[] tiles) {
+        while (size > 0) {
+            int i = random.nextInt(size);
+            int cell = cells[i];
+            size -= 1;
+            cells[i] = cells[size];
+            listed[cell >>> 6] &= ~(1L << cell);
+            if (tiles[cell] == WorldGrid.FLOOR) {
+                return cell;
+            }
+        }
+        return -1;
+    }
+}
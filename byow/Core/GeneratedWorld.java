@@ -0,0 +1,146 @@
+package byow.Core;
+
+import byow.TileEngine.TETile;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/** An immutable snapshot of a freshly generated world: its tiles, the rooms
+ *  in the order they were placed, the avatar's spawn and the coin positions.
+ *  Two snapshots of the same seed are equal field for field. */
+public final class GeneratedWorld implements Serializable {
+    /** Seed the world was generated from. */
+    private final long seed;
+    /** Version of the generator that produced the world. */
+    private final int version;
+    /** Private copy of the generated tiles. */
+    private final WorldGrid grid;
+    /** Rooms as consecutive (x, y, height, width) quadruples. */
+    private final int[] rooms;
+    /** X-coordinate of the avatar's spawn. */
+    private final int spawnX;
+    /** Y-coordinate of the avatar's spawn. */
+    private final int spawnY;
+    /** Coins as consecutive (x, y) pairs, in column-major grid order. */
+    private final int[] coins;
+    /** State of the Engine's random stream right after generation. */
+    private final long randomState;
+
+    /** Creates a snapshot. GRID is copied; ROOMS and COINS are kept as is. */
+    GeneratedWorld(long seed, int version, WorldGrid grid, int[] rooms, int spawnX,
+                   int spawnY, int[] coins, long randomState) {
+        this.seed = seed;
+        this.version = version;
+        this.grid = new WorldGrid(grid);
+        this.rooms = rooms;
+        this.spawnX = spawnX;
+        this.spawnY = spawnY;
+        this.coins = coins;
+        this.randomState = randomState;
+    }
+
+    public long seed() {
+        return seed;
+    }
+
+    public int version() {
+        return version;
+    }
+
+    /** State of the Engine's random stream right after generation, so a
+     *  restored Engine keeps drawing the same numbers (see StateRandom). */
+    long randomState() {
+        return randomState;
+    }
+
+    public int width() {
+        return grid.width();
+    }
+
+    public int height() {
+        return grid.height();
+    }
+
+    /** Returns the tile id at (X, Y). */
+    public byte get(int x, int y) {
+        return grid.get(x, y);
+    }
+
+    /** Returns the tiles themselves, which the caller must not modify. */
+    WorldGrid tiles() {
+        return grid;
+    }
+
+    /** Returns a copy of the tiles that the caller is free to modify. */
+    public WorldGrid grid() {
+        return new WorldGrid(grid);
+    }
+
+    /** Returns the tiles as a fresh TETile[][]. */
+    public TETile[][] toTiles() {
+        return grid.toTiles();
+    }
+
+    public int roomCount() {
+        return rooms.length / 4;
+    }
+
+    public int roomX(int i) {
+        return rooms[4 * i];
+    }
+
+    public int roomY(int i) {
+        return rooms[4 * i + 1];
+    }
+
+    public int roomHeight(int i) {
+        return rooms[4 * i + 2];
+    }
+
+    public int roomWidth(int i) {
+        return rooms[4 * i + 3];
+    }
+
+    public int spawnX() {
+        return spawnX;
+    }
+
+    public int spawnY() {
+        return spawnY;
+    }
+
+    public int coinCount() {
+        return coins.length / 2;
+    }
+
+    public int coinX(int i) {
+        return coins[2 * i];
+    }
+
+    public int coinY(int i) {
+        return coins[2 * i + 1];
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof GeneratedWorld)) {
+            return false;
+        }
+        GeneratedWorld other = (GeneratedWorld) o;
+        return seed == other.seed && version == other.version
+                && randomState == other.randomState
+                && spawnX == other.spawnX && spawnY == other.spawnY
+                && Arrays.equals(rooms, other.rooms) && Arrays.equals(coins, other.coins)
+                && grid.sameTiles(other.grid);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(seed) * 31 + grid.tileHash();
+    }
+
+    @Override
+    public String toString() {
+        return grid.toString();
+    }
+}
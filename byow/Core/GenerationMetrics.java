@@ -0,0 +1,110 @@
+package byow.Core;
+
+/** Counters and phase timings for generating one world, or the sum of them
+ *  over many worlds.
+ *
+ *  An Engine only fills one in while MetricsRegistry is enabled; otherwise
+ *  it keeps none, and each counting site costs a single null check. */
+public final class GenerationMetrics {
+    /** Index in hallRejections of halls that run straight left to right. */
+    public static final int HORIZONTAL = 0;
+    /** Index in hallRejections of halls that run straight up or down. */
+    public static final int VERTICAL = 1;
+    /** Index in hallRejections of halls that turn a corner. */
+    public static final int HYBRID = 2;
+
+    /** Number of worlds these metrics cover. */
+    long worlds;
+    /** Number of candidate Rooms createRoom made. */
+    long roomCandidates;
+    /** Number of candidates checkRoomValid turned down. */
+    long roomRejections;
+    /** Number of values createRoom drew again because they did not fit. */
+    long createRoomRetries;
+    /** Number of halls ableToBuildHall turned down, by hall type. */
+    final long[] hallRejections = new long[3];
+    /** Number of coin spots putCoinsInSpots drew that were not floor. */
+    long coinRetries;
+    /** Nanoseconds spent placing rooms and halls. */
+    long layoutNanos;
+    /** Nanoseconds spent placing the avatar. */
+    long spawnNanos;
+    /** Nanoseconds spent placing coins. */
+    long coinNanos;
+
+    public long worlds() {
+        return worlds;
+    }
+
+    public long roomCandidates() {
+        return roomCandidates;
+    }
+
+    public long roomRejections() {
+        return roomRejections;
+    }
+
+    public long createRoomRetries() {
+        return createRoomRetries;
+    }
+
+    /** Returns the halls of TYPE (HORIZONTAL, VERTICAL or HYBRID) that
+     *  ableToBuildHall turned down. */
+    public long hallRejections(int type) {
+        return hallRejections[type];
+    }
+
+    public long coinRetries() {
+        return coinRetries;
+    }
+
+    public long layoutNanos() {
+        return layoutNanos;
+    }
+
+    public long spawnNanos() {
+        return spawnNanos;
+    }
+
+    public long coinNanos() {
+        return coinNanos;
+    }
+
+    /** Adds every counter and timing of OTHER to this. */
+    void add(GenerationMetrics other) {
+        worlds += other.worlds;
+        roomCandidates += other.roomCandidates;
+        roomRejections += other.roomRejections;
+        createRoomRetries += other.createRoomRetries;
+        for (int i = 0; i < hallRejections.length; i++) {
+            hallRejections[i] += other.hallRejections[i];
+        }
+        coinRetries += other.coinRetries;
+        layoutNanos += other.layoutNanos;
+        spawnNanos += other.spawnNanos;
+        coinNanos += other.coinNanos;
+    }
+
+    /** Returns a copy of these metrics. */
+    public GenerationMetrics copy() {
+        GenerationMetrics rv = new GenerationMetrics();
+        rv.add(this);
+        return rv;
+    }
+
+    /** Returns one "name value" line per counter and timing. */
+    @Override
+    public String toString() {
+        return "worlds " + worlds + "\n"
+                + "roomCandidates " + roomCandidates + "\n"
+                + "roomRejections " + roomRejections + "\n"
+                + "createRoomRetries " + createRoomRetries + "\n"
+                + "hallRejections.horizontal " + hallRejections[HORIZONTAL] + "\n"
+                + "hallRejections.vertical " + hallRejections[VERTICAL] + "\n"
+                + "hallRejections.hybrid " + hallRejections[HYBRID] + "\n"
+                + "coinRetries " + coinRetries + "\n"
+                + "layoutNanos " + layoutNanos + "\n"
+                + "spawnNanos " + spawnNanos + "\n"
+                + "coinNanos " + coinNanos + "\n";
+    }
+}
@@ -0,0 +1,48 @@
+package byow.Core;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/** Replays recorded input strings on headless Engines and reports the world
+ *  each one ends in, for regression runs over many sessions.
+ *
+ *  Every input gets its own Engine in headless mode (see
+ *  Engine.setHeadless), so no sound, image or save gets in the way and
+ *  inputs can be replayed side by side. Worlds come from WorldCache, so a
+ *  batch that keeps to a few seeds only generates each once. An input that
+ *  loads with "l" still reads the saved game, but ":q" never saves. */
+public class HeadlessReplay {
+    /** Pool the replays run on. */
+    private final ForkJoinPool pool;
+
+    /** Creates a replayer that runs on the common fork-join pool. */
+    public HeadlessReplay() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /** Creates a replayer that runs on POOL. */
+    public HeadlessReplay(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /** Returns the Engine left after running INPUT headless. */
+    public static Engine simulate(String input) {
+        Engine engine = new Engine();
+        engine.setHeadless(true);
+        engine.runInput(input);
+        return engine;
+    }
+
+    /** Returns the WorldGrid.contentHash of the world INPUT ends in. */
+    public static long replay(String input) {
+        return simulate(input).worldGrid().contentHash();
+    }
+
+    /** Returns the final world hashes of INPUTS, in the same order,
+     *  replaying them in parallel on the pool. */
+    public long[] replayAll(List<String> inputs) {
+        return pool.submit(() -> IntStream.range(0, inputs.size()).parallel()
+                .mapToLong(i -> replay(inputs.get(i))).toArray()).join();
+    }
+}
@@ -0,0 +1,310 @@
+package byow.Core;
+
+import byow.TileEngine.TETile;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/** An unbounded world that the avatar can explore without limit.
+ *
+ *  Chunks are generated from (seed, chunkX, chunkY) exactly as in
+ *  ChunkedWorld, the first time the avatar walks near them or a view asks
+ *  for them, and are kept in a bounded least-recently-used cache. An evicted
+ *  chunk is simply generated again the next time it is needed, which gives
+ *  back the same tiles because chunks only ever hold what was generated:
+ *  the avatar and the cells it changed, such as coins it picked up, are
+ *  kept on top of them.
+ *
+ *  Each chunk gets coins the way Engine puts them in a world. The avatar
+ *  moves by the same rules as in Engine (see Movement), with a budget of
+ *  MOVES_PER_ROOM moves for each room of the chunk it starts in; a teleport
+ *  lands in a random room of the chunk the avatar is in. */
+public class InfiniteWorld {
+    /** Default number of chunks kept in memory. */
+    public static final int DEFAULT_MAX_CHUNKS = 64;
+    /** How many chunks around the avatar's are loaded when it enters a chunk. */
+    private static final int PREFETCH_RADIUS = 1;
+
+    /** Seed of the world. */
+    private final long seed;
+    /** Side length of a chunk in tiles. */
+    private final int chunkSize;
+    /** Largest number of chunks kept in the cache. */
+    private final int maxChunks;
+    /** Cached chunks keyed by ChunkedWorld.chunkKey, in access order. */
+    private final LinkedHashMap<Long, GeneratedWorld> cache;
+    /** Cells whose tile differs from the generated one, keyed by x << 32 | y. */
+    private final Map<Long, Byte> changes;
+    /** The world as Movement sees it. */
+    private final Movement.Tiles tiles;
+    /** Where teleports draw their rooms from. */
+    private final Random random;
+    /** Number of chunk lookups, other than prefetching, answered from the
+     *  cache. */
+    private long hits;
+    /** Number of chunk lookups, other than prefetching, that had to generate
+     *  the chunk. */
+    private long misses;
+    /** Number of chunks generated ahead of the avatar by prefetching. */
+    private long prefetched;
+    /** Number of chunks dropped from the cache. */
+    private long evictions;
+    /** X-coordinate of the avatar. */
+    private int playerX;
+    /** Y-coordinate of the avatar. */
+    private int playerY;
+    /** Number of moves the avatar has made. */
+    private long moves;
+    /** Number of coins the avatar has picked up. */
+    private int coinsCollected;
+    /** Number of moves the avatar has left. */
+    private int movesLeft;
+    /** Key of the chunk the avatar was in when its neighbours were loaded. */
+    private long prefetchedKey;
+
+    /** Creates a world for SEED with the default chunk size and cache size. */
+    public InfiniteWorld(long seed) {
+        this(seed, ChunkedWorld.CHUNK_SIZE, DEFAULT_MAX_CHUNKS);
+    }
+
+    /** Creates a world for SEED made of CHUNKSIZE chunks, keeping at most
+     *  MAXCHUNKS of them in memory. MAXCHUNKS must cover the chunks loaded
+     *  around the avatar. */
+    public InfiniteWorld(long seed, int chunkSize, int maxChunks) {
+        int prefetch = (2 * PREFETCH_RADIUS + 1) * (2 * PREFETCH_RADIUS + 1);
+        if (chunkSize < ChunkedWorld.MIN_CHUNK_SIZE || maxChunks < prefetch) {
+            throw new IllegalArgumentException("chunks must be at least "
+                    + ChunkedWorld.MIN_CHUNK_SIZE + " tiles and the cache must hold "
+                    + prefetch + " of them");
+        }
+        this.seed = seed;
+        this.chunkSize = chunkSize;
+        this.maxChunks = maxChunks;
+        this.cache = new LinkedHashMap<Long, GeneratedWorld>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, GeneratedWorld> eldest) {
+                if (size() > InfiniteWorld.this.maxChunks) {
+                    evictions += 1;
+                    return true;
+                }
+                return false;
+            }
+        };
+        this.changes = new HashMap<>();
+        this.tiles = new Movement.Tiles() {
+            @Override
+            public boolean inBounds(int x, int y) {
+                return true;
+            }
+
+            @Override
+            public byte get(int x, int y) {
+                return InfiniteWorld.this.get(x, y);
+            }
+
+            @Override
+            public void set(int x, int y, byte id) {
+                if (id == generated(x, y)) {
+                    changes.remove(cell(x, y));
+                } else {
+                    changes.put(cell(x, y), id);
+                }
+            }
+        };
+        this.random = new StateRandom(seed);
+        spawn();
+    }
+
+    /** Puts the avatar on the first floor tile of chunk (0, 0) and gives it
+     *  its moves. */
+    private void spawn() {
+        GeneratedWorld origin = load(0, 0, false);
+        movesLeft = origin.roomCount() * Engine.MOVES_PER_ROOM;
+        for (int x = 0; x < chunkSize; x++) {
+            for (int y = 0; y < chunkSize; y++) {
+                if (origin.get(x, y) == WorldGrid.FLOOR) {
+                    playerX = x;
+                    playerY = y;
+                    tiles.set(x, y, WorldGrid.AVATAR);
+                    prefetch();
+                    return;
+                }
+            }
+        }
+    }
+
+    /** Returns the tile id at (X, Y), with the avatar and whatever it
+     *  changed. */
+    public byte get(int x, int y) {
+        Byte changed = changes.get(cell(x, y));
+        return changed != null ? changed : generated(x, y);
+    }
+
+    /** Returns the generated tile id at (X, Y). */
+    private byte generated(int x, int y) {
+        int cx = Math.floorDiv(x, chunkSize);
+        int cy = Math.floorDiv(y, chunkSize);
+        return chunk(cx, cy).get(x - cx * chunkSize, y - cy * chunkSize);
+    }
+
+    /** Returns the generated tiles of chunk (CX, CY), generating it if it is
+     *  not cached. */
+    public WorldGrid chunk(int cx, int cy) {
+        return load(cx, cy, false).tiles();
+    }
+
+    /** Returns chunk (CX, CY), generating it if it is not cached, and counts
+     *  the lookup as a prefetch if PREFETCHING. */
+    private GeneratedWorld load(int cx, int cy, boolean prefetching) {
+        long key = ChunkedWorld.chunkKey(cx, cy);
+        GeneratedWorld rv = cache.get(key);
+        if (rv != null) {
+            if (!prefetching) {
+                hits += 1;
+            }
+            return rv;
+        }
+        if (prefetching) {
+            prefetched += 1;
+        } else {
+            misses += 1;
+        }
+        rv = ChunkedWorld.generateChunkWorld(seed, cx, cy, chunkSize, chunkSize, chunkSize,
+                true, true, true, true);
+        cache.put(key, rv);
+        return rv;
+    }
+
+    /** Returns the key of cell (X, Y) in changes. */
+    private static long cell(int x, int y) {
+        return (long) x << 32 | (y & 0xFFFFFFFFL);
+    }
+
+    /** Applies the move MOVETOMAKE (W, A, S, D or T) to the avatar, by the
+     *  rules of Movement. */
+    public void moveToDirection(char moveToMake) {
+        if (moveToMake == 'T') {
+            teleport();
+        } else if (moveToMake == 'W' || moveToMake == 'A' || moveToMake == 'S'
+                || moveToMake == 'D') {
+            int x = playerX + Movement.dx(moveToMake);
+            int y = playerY + Movement.dy(moveToMake);
+            if (!Movement.canEnter(tiles, x, y)) {
+                return;
+            }
+            moveTo(x, y);
+            movesLeft -= Movement.STEP_COST;
+        } else {
+            return;
+        }
+        moves += 1;
+        if (ChunkedWorld.chunkKey(Math.floorDiv(playerX, chunkSize),
+                Math.floorDiv(playerY, chunkSize)) != prefetchedKey) {
+            prefetch();
+        }
+    }
+
+    /** Teleports the avatar to the middle of a random room of its chunk. */
+    private void teleport() {
+        int cx = Math.floorDiv(playerX, chunkSize);
+        int cy = Math.floorDiv(playerY, chunkSize);
+        GeneratedWorld rooms = load(cx, cy, false);
+        int i = random.nextInt(rooms.roomCount());
+        movesLeft -= Movement.TELEPORT_COST;
+        moveTo(cx * chunkSize + Movement.center(rooms.roomX(i), rooms.roomWidth(i)),
+                cy * chunkSize + Movement.center(rooms.roomY(i), rooms.roomHeight(i)));
+    }
+
+    /** Moves the avatar to (X, Y), picking up any coin there. */
+    private void moveTo(int x, int y) {
+        if (Movement.moveAvatar(tiles, playerX, playerY, x, y)) {
+            coinsCollected += 1;
+        }
+        playerX = x;
+        playerY = y;
+    }
+
+    /** Loads the chunks within PREFETCH_RADIUS of the avatar's chunk. */
+    private void prefetch() {
+        int cx = Math.floorDiv(playerX, chunkSize);
+        int cy = Math.floorDiv(playerY, chunkSize);
+        prefetchedKey = ChunkedWorld.chunkKey(cx, cy);
+        for (int i = cx - PREFETCH_RADIUS; i <= cx + PREFETCH_RADIUS; i++) {
+            for (int j = cy - PREFETCH_RADIUS; j <= cy + PREFETCH_RADIUS; j++) {
+                load(i, j, true);
+            }
+        }
+        // Keeps the avatar's own chunk the most recently used.
+        load(cx, cy, true);
+    }
+
+    /** Returns the W x H window of tiles whose lower left corner is (X0, Y0),
+     *  with the avatar drawn in, ready for TERenderer.renderFrame. */
+    public TETile[][] view(int x0, int y0, int w, int h) {
+        TETile[][] rv = new TETile[w][h];
+        for (int x = 0; x < w; x++) {
+            for (int y = 0; y < h; y++) {
+                rv[x][y] = WorldGrid.tileOf(get(x0 + x, y0 + y));
+            }
+        }
+        return rv;
+    }
+
+    /** Returns the W x H window centred on the avatar. */
+    public TETile[][] viewAroundPlayer(int w, int h) {
+        return view(playerX - w / 2, playerY - h / 2, w, h);
+    }
+
+    public int playerX() {
+        return playerX;
+    }
+
+    public int playerY() {
+        return playerY;
+    }
+
+    public long moves() {
+        return moves;
+    }
+
+    public int coinsCollected() {
+        return coinsCollected;
+    }
+
+    public int movesLeft() {
+        return movesLeft;
+    }
+
+    /** Largest number of chunks kept in memory. */
+    public int maxChunks() {
+        return maxChunks;
+    }
+
+    /** Upper bound on the bytes of tile data the cache holds. */
+    public long memoryLimitBytes() {
+        return (long) maxChunks * chunkSize * chunkSize;
+    }
+
+    /** Number of chunks currently in memory. */
+    public int chunksCached() {
+        return cache.size();
+    }
+
+    public long hits() {
+        return hits;
+    }
+
+    public long misses() {
+        return misses;
+    }
+
+    public long prefetched() {
+        return prefetched;
+    }
+
+    public long evictions() {
+        return evictions;
+    }
+}
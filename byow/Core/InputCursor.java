@@ -0,0 +1,115 @@
+package byow.Core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/** Hands out the characters of an input one at a time, so Engine can parse
+ *  an input of any length without holding it all in memory.
+ *
+ *  Readers are read through a fixed buffer. Bytes from streams and files
+ *  are taken as one character each, which is exact for the ASCII the input
+ *  grammar uses; files are memory-mapped a window at a time. Problems
+ *  reading throw IllegalArgumentException, as in Utils. */
+abstract class InputCursor {
+    /** Returned by next once the input is used up. */
+    static final int END = -1;
+    /** Size of the buffers of Readers and streams. */
+    private static final int BUFFER = 1 << 16;
+    /** Largest part of a file mapped at once. */
+    private static final long WINDOW = 1 << 28;
+
+    /** Returns the next character, or END from then on once there are
+     *  none left. */
+    abstract int next();
+
+    /** Returns a cursor over INPUT. */
+    static InputCursor of(CharSequence input) {
+        return new InputCursor() {
+            private int pos;
+
+            @Override
+            int next() {
+                return pos < input.length() ? input.charAt(pos++) : END;
+            }
+        };
+    }
+
+    /** Returns a cursor over INPUT, which the caller closes. */
+    static InputCursor of(Reader input) {
+        return new InputCursor() {
+            private final char[] buf = new char[BUFFER];
+            private int pos;
+            private int limit;
+
+            @Override
+            int next() {
+                if (pos == limit) {
+                    try {
+                        limit = Math.max(input.read(buf), 0);
+                    } catch (IOException excp) {
+                        throw new IllegalArgumentException(excp);
+                    }
+                    pos = 0;
+                    if (limit == 0) {
+                        return END;
+                    }
+                }
+                return buf[pos++];
+            }
+        };
+    }
+
+    /** Returns a cursor over the bytes of INPUT, which the caller closes. */
+    static InputCursor of(InputStream input) {
+        return new InputCursor() {
+            private final byte[] buf = new byte[BUFFER];
+            private int pos;
+            private int limit;
+
+            @Override
+            int next() {
+                if (pos == limit) {
+                    try {
+                        limit = Math.max(input.read(buf), 0);
+                    } catch (IOException excp) {
+                        throw new IllegalArgumentException(excp);
+                    }
+                    pos = 0;
+                    if (limit == 0) {
+                        return END;
+                    }
+                }
+                return buf[pos++] & 0xFF;
+            }
+        };
+    }
+
+    /** Returns a cursor over the bytes of the open file FILE, mapping it
+     *  into memory a window at a time. The caller closes FILE. */
+    static InputCursor of(FileChannel file) {
+        return new InputCursor() {
+            private ByteBuffer window = ByteBuffer.allocate(0);
+            private long mapped;
+
+            @Override
+            int next() {
+                if (!window.hasRemaining()) {
+                    try {
+                        long length = Math.min(WINDOW, file.size() - mapped);
+                        if (length <= 0) {
+                            return END;
+                        }
+                        window = file.map(FileChannel.MapMode.READ_ONLY, mapped, length);
+                        mapped += length;
+                    } catch (IOException excp) {
+                        throw new IllegalArgumentException(excp);
+                    }
+                }
+                return window.get() & 0xFF;
+            }
+        };
+    }
+}
@@ -0,0 +1,111 @@
+package byow.Core;
+
+import edu.princeton.cs.algs4.StdDraw;
+
+import java.awt.AWTEvent;
+import java.awt.EventQueue;
+import java.awt.Toolkit;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseEvent;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/** Hands the keys typed and mouse activity in the StdDraw window to the
+ *  game thread, which sleeps until there is some instead of polling StdDraw
+ *  in a loop.
+ *
+ *  A listener on the AWT toolkit puts every typed key on a bounded queue.
+ *  Mouse presses and drags put a single MOUSE marker on it however many of
+ *  them arrive before it is taken; whoever takes it reads the position from
+ *  StdDraw, which has seen the latest event by then. StdDraw still keeps its
+ *  own list of typed keys, which take and poll empty so it does not grow.
+ *  If the game falls so far behind that the queue fills, further events are
+ *  dropped until it catches up. */
+public final class InputEvents {
+    /** Returned by take and poll for mouse activity. */
+    public static final int MOUSE = -1;
+    /** Returned by poll when there is no input. */
+    public static final int NONE = -2;
+    /** Largest number of events waiting at once. */
+    private static final int CAPACITY = 1024;
+
+    /** Keys, as chars, and MOUSE markers, oldest first. */
+    private static final BlockingQueue<Integer> QUEUE = new ArrayBlockingQueue<>(CAPACITY);
+    /** Whether a MOUSE marker is on the queue. */
+    private static final AtomicBoolean MOUSE_QUEUED = new AtomicBoolean();
+    /** Whether the listener is installed. */
+    private static boolean installed;
+
+    private InputEvents() {
+    }
+
+    /** Starts listening for input, if nothing has yet. Input from before
+     *  the first call is not seen. */
+    public static synchronized void install() {
+        if (installed) {
+            return;
+        }
+        Toolkit.getDefaultToolkit().addAWTEventListener(InputEvents::dispatched,
+                AWTEvent.KEY_EVENT_MASK | AWTEvent.MOUSE_EVENT_MASK
+                        | AWTEvent.MOUSE_MOTION_EVENT_MASK);
+        installed = true;
+    }
+
+    /** Queues EVENT, which the event dispatch thread is about to hand to
+     *  StdDraw's own listeners. */
+    private static void dispatched(AWTEvent event) {
+        int id = event.getID();
+        if (id == KeyEvent.KEY_TYPED) {
+            QUEUE.offer((int) ((KeyEvent) event).getKeyChar());
+        } else if (id == MouseEvent.MOUSE_PRESSED || id == MouseEvent.MOUSE_DRAGGED) {
+            if (MOUSE_QUEUED.compareAndSet(false, true)) {
+                // Queued once StdDraw has handled the event, so it knows the new position
+                EventQueue.invokeLater(() -> {
+                    if (!QUEUE.offer(MOUSE)) {
+                        MOUSE_QUEUED.set(false);
+                    }
+                });
+            }
+        }
+    }
+
+    /** Waits for input and returns it: a typed key or MOUSE. */
+    public static int take() {
+        install();
+        try {
+            return taken(QUEUE.take());
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted waiting for input", excp);
+        }
+    }
+
+    /** Returns the oldest input waiting, a typed key or MOUSE, or NONE if
+     *  there is none. */
+    public static int poll() {
+        install();
+        Integer next = QUEUE.poll();
+        return next == null ? NONE : taken(next);
+    }
+
+    /** Waits for a key, skipping any mouse activity, and returns it. */
+    public static char nextKey() {
+        int next = take();
+        while (next == MOUSE) {
+            next = take();
+        }
+        return (char) next;
+    }
+
+    /** Finishes taking NEXT off the queue and returns it. */
+    private static int taken(int next) {
+        if (next == MOUSE) {
+            MOUSE_QUEUED.set(false);
+        }
+        while (StdDraw.hasNextKeyTyped()) {
+            StdDraw.nextKeyTyped();
+        }
+        return next;
+    }
+}
@@ -0,0 +1,290 @@
+package byow.Core;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/** The save file of one game, written by appending to it.
+ *
+ *  A journal starts with a header holding the seed and generator version,
+ *  followed by records: batches of moves, checkpoints and settings. Each
+ *  record is its payload length, its type, the payload and a CRC-32 of the
+ *  type and payload. A save appends records for whatever changed since the
+ *  last save, so it costs only the new moves, and writes them all with one
+ *  write and one fsync.
+ *
+ *  Reading a journal stops at the first record that is cut short or fails
+ *  its check, as one would after a crash in the middle of a save; the game
+ *  is what the records before it describe, and the next save writes over
+ *  the damaged tail. */
+final class Journal {
+    /** First four bytes of every journal, "BYJ1". */
+    private static final int MAGIC = 0x42594A31;
+    /** Bytes in the header. */
+    private static final int HEADER = 16;
+    /** Record of moves: their number, then one ASCII byte each. */
+    private static final byte MOVES = 1;
+    /** Record of a Checkpoint. */
+    private static final byte CHECKPOINT = 2;
+    /** Record of the settings, one bit each. */
+    private static final byte SETTINGS = 3;
+    /** Largest number of moves in one record. */
+    private static final int BATCH = 1 << 16;
+    /** Largest payload read back; a longer one means the length is damaged. */
+    private static final int MAX_RECORD = 1 << 24;
+    /** Settings bits. */
+    static final int LINE_OF_SIGHT = 1;
+    static final int MUTE = 2;
+    static final int JUMP_SCARE = 4;
+
+    /** File the journal is kept in. */
+    private final File file;
+    /** Seed of the game. */
+    private final long seed;
+    /** Generator version of the game. */
+    private final int version;
+    /** Moves read back from the file, or null for a journal made by create. */
+    private MoveLog moves;
+    /** Latest checkpoint in the file, or null. */
+    private Checkpoint checkpoint;
+    /** Latest settings in the file. */
+    private int settings;
+    /** Number of moves in the file. */
+    private int savedMoves;
+    /** Bytes at the start of the file known to hold this journal, or -1 if
+     *  the file has yet to be written. */
+    private long length;
+
+    private Journal(File file, long seed, int version) {
+        this.file = file;
+        this.seed = seed;
+        this.version = version;
+        this.length = -1;
+    }
+
+    /** Returns a journal for a new game of SEED and generator VERSION,
+     *  which the first save writes to FILE in place of whatever is there. */
+    static Journal create(File file, long seed, int version) {
+        return new Journal(file, seed, version);
+    }
+
+    /** Returns a journal for the game of SEED and generator VERSION whose
+     *  moves so far are MOVES, whose latest checkpoint is LATEST (or null)
+     *  and whose settings are SETTINGS, none of it written to FILE yet. */
+    static Journal create(File file, long seed, int version, MoveLog moves,
+                          Checkpoint latest, int settings) {
+        Journal rv = new Journal(file, seed, version);
+        rv.moves = moves;
+        rv.checkpoint = latest;
+        rv.settings = settings;
+        return rv;
+    }
+
+    /** Returns the journal in FILE, read up to its first damaged record.
+     *  Throws IllegalArgumentException if FILE holds no journal. */
+    static Journal read(File file) {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IllegalArgumentException(file + " is not a journal");
+            }
+            long seed = in.readLong();
+            Journal rv = new Journal(file, seed, in.readInt());
+            rv.moves = new MoveLog();
+            rv.length = HEADER;
+            CRC32 crc = new CRC32();
+            while (true) {
+                byte[] payload;
+                byte type;
+                try {
+                    int size = in.readInt();
+                    if (size < 0 || size > MAX_RECORD) {
+                        break;
+                    }
+                    type = in.readByte();
+                    payload = new byte[size];
+                    in.readFully(payload);
+                    crc.reset();
+                    crc.update(type);
+                    crc.update(payload);
+                    if (in.readInt() != (int) crc.getValue()) {
+                        break;
+                    }
+                } catch (EOFException excp) {
+                    break;
+                }
+                try {
+                    if (!rv.apply(type, payload)) {
+                        break;
+                    }
+                } catch (EOFException excp) {
+                    break;
+                }
+                rv.length += 9 + payload.length;
+            }
+            rv.savedMoves = rv.moves.size();
+            return rv;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp);
+        }
+    }
+
+    /** Adds the record of TYPE with PAYLOAD to what was read; returns false
+     *  if the record makes no sense here. */
+    private boolean apply(byte type, byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        if (type == MOVES) {
+            int count = in.readInt();
+            if (count != payload.length - 4) {
+                return false;
+            }
+            for (int i = 0; i < count; i++) {
+                char move = (char) in.readByte();
+                if (!MoveLog.isMove(move)) {
+                    return false;
+                }
+                moves.append(move);
+            }
+        } else if (type == CHECKPOINT) {
+            int at = in.readInt();
+            int cells = in.readInt();
+            if (cells < 0 || cells > payload.length / 4) {
+                return false;
+            }
+            int[] diff = new int[cells];
+            for (int i = 0; i < diff.length; i++) {
+                diff[i] = in.readInt();
+            }
+            if (at != moves.size()) {
+                return false;
+            }
+            checkpoint = new Checkpoint(at, seed, version, diff, in.readInt(), in.readInt(),
+                    in.readInt(), in.readInt(), in.readLong());
+        } else if (type == SETTINGS) {
+            settings = in.readByte();
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    long seed() {
+        return seed;
+    }
+
+    int version() {
+        return version;
+    }
+
+    /** Returns the moves read back from the file. */
+    MoveLog moves() {
+        return moves;
+    }
+
+    /** Returns the latest checkpoint read back, or null. */
+    Checkpoint checkpoint() {
+        return checkpoint;
+    }
+
+    /** Returns the latest settings read back, as LINE_OF_SIGHT, MUTE and
+     *  JUMP_SCARE bits. */
+    int settings() {
+        return settings;
+    }
+
+    /** Returns whether this journal belongs to the game of SEED and
+     *  generator VERSION. */
+    boolean isFor(long seed, int version) {
+        return this.seed == seed && this.version == version;
+    }
+
+    /** Saves the game whose moves are MOVES, whose latest checkpoint is
+     *  LATEST (or null) and whose settings are SETTINGS, appending only what
+     *  the file does not have yet and syncing it to disk. Writes the whole
+     *  journal again if the file was never written or has been cut short
+     *  since. */
+    void save(MoveLog moves, Checkpoint latest, int settings) {
+        try (FileChannel out = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE)) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream data = new DataOutputStream(bytes);
+            if (length < 0 || out.size() < length || moves.size() < savedMoves) {
+                data.writeInt(MAGIC);
+                data.writeLong(seed);
+                data.writeInt(version);
+                length = 0;
+                savedMoves = 0;
+                checkpoint = null;
+                this.settings = -1;
+            }
+            for (int from = savedMoves; from < moves.size(); from += BATCH) {
+                int count = Math.min(BATCH, moves.size() - from);
+                ByteArrayOutputStream payload = new ByteArrayOutputStream(4 + count);
+                DataOutputStream p = new DataOutputStream(payload);
+                p.writeInt(count);
+                for (int i = from; i < from + count; i++) {
+                    p.writeByte(moves.get(i));
+                }
+                record(data, MOVES, payload.toByteArray());
+            }
+            if (latest != null && latest != checkpoint) {
+                record(data, CHECKPOINT, checkpointPayload(latest));
+            }
+            if (settings != this.settings) {
+                record(data, SETTINGS, new byte[] {(byte) settings});
+            }
+            out.truncate(length);
+            ByteBuffer buf = ByteBuffer.wrap(bytes.toByteArray());
+            long at = length;
+            while (buf.hasRemaining()) {
+                at += out.write(buf, at);
+            }
+            out.force(false);
+            length = at;
+            savedMoves = moves.size();
+            checkpoint = latest;
+            this.settings = settings;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp);
+        }
+    }
+
+    /** Writes a record of TYPE with PAYLOAD to OUT. */
+    private static void record(DataOutputStream out, byte type, byte[] payload)
+            throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(payload);
+        out.writeInt(payload.length);
+        out.writeByte(type);
+        out.write(payload);
+        out.writeInt((int) crc.getValue());
+    }
+
+    /** Returns the payload of a record of SAVED. */
+    private static byte[] checkpointPayload(Checkpoint saved) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(saved.moves);
+        out.writeInt(saved.diff.length);
+        for (int v : saved.diff) {
+            out.writeInt(v);
+        }
+        out.writeInt(saved.playerX);
+        out.writeInt(saved.playerY);
+        out.writeInt(saved.coinsCollected);
+        out.writeInt(saved.movesLeft);
+        out.writeLong(saved.randomState);
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,51 @@
+package byow.Core;
+
+/** Collects GenerationMetrics from every Engine in the process.
+ *
+ *  Metrics are off until setEnabled(true). While they are on, each
+ *  createGameworld fills in a GenerationMetrics of its own, which the Engine
+ *  keeps (see Engine.metrics) and adds to the registry's running total once
+ *  the world is done, so threads generating in parallel only meet here once
+ *  per world. Call reset() before a batch to aggregate just that batch. */
+public final class MetricsRegistry {
+    /** The registry every Engine reports to. */
+    private static final MetricsRegistry GLOBAL = new MetricsRegistry();
+
+    /** Whether Engines collect metrics. */
+    private static volatile boolean enabled;
+
+    /** Sum of the metrics of every world recorded since the last reset. */
+    private GenerationMetrics total = new GenerationMetrics();
+
+    private MetricsRegistry() {
+    }
+
+    /** Returns the registry shared by every Engine in this process. */
+    public static MetricsRegistry global() {
+        return GLOBAL;
+    }
+
+    /** Turns metrics collection on or off for worlds generated from now on. */
+    public static void setEnabled(boolean on) {
+        enabled = on;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Adds the metrics of one finished world. */
+    synchronized void record(GenerationMetrics world) {
+        total.add(world);
+    }
+
+    /** Returns the sum of every world recorded since the last reset. */
+    public synchronized GenerationMetrics total() {
+        return total.copy();
+    }
+
+    /** Forgets every world recorded so far. */
+    public synchronized void reset() {
+        total = new GenerationMetrics();
+    }
+}
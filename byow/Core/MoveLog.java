@@ -0,0 +1,91 @@
+package byow.Core;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/** An append-only record of the avatar's moves, W, A, S, D and T, packed
+ *  into three bits each. Twenty-one moves share a long, so a recording
+ *  takes about three bits per move, appending costs constant amortized time
+ *  and allocates only when the array doubles, and reading a move back
+ *  involves no boxing or string copying. */
+public class MoveLog implements Serializable {
+    /** The moves in the order of their codes. */
+    private static final String MOVES = "WASDT";
+    /** Bits per move. */
+    private static final int BITS = 3;
+    /** Moves per long. */
+    private static final int PER_WORD = 64 / BITS;
+
+    /** Packed moves; move i is in word i / PER_WORD. */
+    private long[] words;
+    /** Number of moves recorded. */
+    private int size;
+
+    /** Creates an empty log. */
+    public MoveLog() {
+        words = new long[4];
+    }
+
+    /** Returns a log holding the moves in MOVES, skipping other characters. */
+    public static MoveLog of(CharSequence moves) {
+        MoveLog rv = new MoveLog();
+        for (int i = 0; i < moves.length(); i++) {
+            if (isMove(moves.charAt(i))) {
+                rv.append(moves.charAt(i));
+            }
+        }
+        return rv;
+    }
+
+    /** Returns whether C is a move, in either case. */
+    public static boolean isMove(char c) {
+        return MOVES.indexOf(Character.toUpperCase(c)) >= 0;
+    }
+
+    /** Records MOVE, one of W, A, S, D or T in either case. */
+    public void append(char move) {
+        int code = MOVES.indexOf(Character.toUpperCase(move));
+        if (code < 0) {
+            throw new IllegalArgumentException("'" + move + "' is not a move");
+        }
+        int word = size / PER_WORD;
+        if (word == words.length) {
+            words = Arrays.copyOf(words, words.length * 2);
+        }
+        words[word] |= (long) code << (size % PER_WORD * BITS);
+        size += 1;
+    }
+
+    /** Returns the number of moves recorded. */
+    public int size() {
+        return size;
+    }
+
+    /** Returns move I as an upper case W, A, S, D or T. */
+    public char get(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("no move " + i + " in a log of " + size);
+        }
+        return MOVES.charAt((int) (words[i / PER_WORD] >>> (i % PER_WORD * BITS)) & 7);
+    }
+
+    /** Hands every move, in order, to ACTION as an upper case character. */
+    public void forEach(IntConsumer action) {
+        for (int w = 0, i = 0; i < size; w++) {
+            long bits = words[w];
+            for (int k = 0; k < PER_WORD && i < size; k++, i++) {
+                action.accept(MOVES.charAt((int) bits & 7));
+                bits >>>= BITS;
+            }
+        }
+    }
+
+    /** Returns the moves as a string of upper case letters. */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(size);
+        forEach(m -> sb.append((char) m));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,65 @@
+package byow.Core;
+
+/** The rules the avatar moves by, kept in one place so that Engine and
+ *  InfiniteWorld move it alike.
+ *
+ *  A step goes one tile up, left, down or right, onto floor or onto a coin,
+ *  which the avatar picks up; walls, empty space and the edge of the world
+ *  stop it. A step costs STEP_COST moves and a teleport, which lands in the
+ *  middle of a room and also picks up a coin there, costs TELEPORT_COST. The
+ *  cell the avatar leaves becomes floor. */
+final class Movement {
+    /** Moves a step costs. */
+    static final int STEP_COST = 1;
+    /** Moves a teleport costs. */
+    static final int TELEPORT_COST = Engine.TELEPORT_COST;
+
+    /** Tiles the avatar moves over. */
+    interface Tiles {
+        /** Returns whether (X, Y) is part of the world. */
+        boolean inBounds(int x, int y);
+
+        /** Returns the tile id at (X, Y), which is in bounds. */
+        byte get(int x, int y);
+
+        /** Sets the tile id at (X, Y), which is in bounds, to ID. */
+        void set(int x, int y, byte id);
+    }
+
+    private Movement() {
+    }
+
+    /** Returns how far a step of MOVE (W, A, S or D) goes along x. */
+    static int dx(char move) {
+        return move == 'D' ? 1 : move == 'A' ? -1 : 0;
+    }
+
+    /** Returns how far a step of MOVE (W, A, S or D) goes along y. */
+    static int dy(char move) {
+        return move == 'W' ? 1 : move == 'S' ? -1 : 0;
+    }
+
+    /** Returns whether the avatar may step onto (X, Y) of TILES. */
+    static boolean canEnter(Tiles tiles, int x, int y) {
+        if (!tiles.inBounds(x, y)) {
+            return false;
+        }
+        byte id = tiles.get(x, y);
+        return id == WorldGrid.FLOOR || id == WorldGrid.COIN;
+    }
+
+    /** Moves the avatar on TILES from (X0, Y0) to (X1, Y1), leaving floor
+     *  behind, and returns whether it picked up a coin there. */
+    static boolean moveAvatar(Tiles tiles, int x0, int y0, int x1, int y1) {
+        boolean coin = tiles.get(x1, y1) == WorldGrid.COIN;
+        tiles.set(x0, y0, WorldGrid.FLOOR);
+        tiles.set(x1, y1, WorldGrid.AVATAR);
+        return coin;
+    }
+
+    /** Returns where along one axis a teleport lands in a room that starts
+     *  at START and is SIZE tiles long on it: the middle. */
+    static int center(int start, int size) {
+        return start + size / 2;
+    }
+}
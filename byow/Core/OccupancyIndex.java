@@ -0,0 +1,61 @@
+package byow.Core;
+
+/** Tracks which cells of a grid are occupied (anything but NOTHING) and
+ *  answers "is this rectangle empty?" without touching the tiles.
+ *
+ *  Each column is a run of 64-bit words with bit y set when (x, y) is
+ *  occupied, so a query ANDs one mask per column and word: a room costs at
+ *  most 13 word tests on the 80x30 board no matter how many cells it covers,
+ *  and a write flips a single bit. */
+class OccupancyIndex {
+    /** Number of words per column. */
+    private final int stride;
+    /** Column-major occupancy bits, column x starting at word x * stride. */
+    private final long[] bits;
+
+    /** Creates an index with no occupied cells. */
+    OccupancyIndex(int width, int height) {
+        this.stride = (height + 63) >>> 6;
+        this.bits = new long[width * stride];
+    }
+
+    /** Returns whether (X, Y) is occupied. */
+    boolean occupied(int x, int y) {
+        return (bits[x * stride + (y >>> 6)] & (1L << y)) != 0;
+    }
+
+    /** Marks (X, Y) as occupied or not. */
+    void set(int x, int y, boolean occupied) {
+        int k = x * stride + (y >>> 6);
+        if (occupied) {
+            bits[k] |= 1L << y;
+        } else {
+            bits[k] &= ~(1L << y);
+        }
+    }
+
+    /** Returns whether every cell in [X0, X1] by [Y0, Y1] is unoccupied. An
+     *  empty range (X0 > X1 or Y0 > Y1) is trivially empty. */
+    boolean isEmpty(int x0, int y0, int x1, int y1) {
+        if (x0 > x1 || y0 > y1) {
+            return true;
+        }
+        int w0 = y0 >>> 6;
+        int w1 = y1 >>> 6;
+        for (int w = w0; w <= w1; w++) {
+            long mask = -1L;
+            if (w == w0) {
+                mask &= -1L << y0;
+            }
+            if (w == w1) {
+                mask &= -1L >>> (63 - (y1 & 63));
+            }
+            for (int k = x0 * stride + w; k <= x1 * stride + w; k += stride) {
+                if ((bits[k] & mask) != 0) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,489 @@
+package byow.Core;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** Answers distance and path questions on a WorldGrid, moving the way the
+ *  avatar does: one tile up, down, left or right, onto walkable tiles only.
+ *  Teleporting is not a move here.
+ *
+ *  A distance field holds the number of moves from every cell to one target,
+ *  found by breadth-first search. Fields are kept in a small
+ *  least-recently-used cache keyed by target and thrown away only when a
+ *  cell of the grid turns walkable or unwalkable (see WorldGrid.walkVersion),
+ *  so the avatar walking about and coins being picked up keep them valid.
+ *  Since moves are symmetric, one field answers how far every cell is from
+ *  its target and how far its target is from every cell.
+ *
+ *  Single paths come from A* with the Manhattan distance, or from jump-point
+ *  search, which skips over the open middle of rooms by only stopping where
+ *  a wall ends. Both return shortest paths. A Pathfinder reuses its scratch
+ *  arrays between queries, so it must not be shared between threads. */
+public class Pathfinder {
+    /** Distance given for cells the target cannot be reached from. */
+    public static final int UNREACHABLE = -1;
+    /** Default number of distance fields kept. */
+    public static final int DEFAULT_FIELDS = 32;
+
+    /** Grid the paths are found on. */
+    private final WorldGrid grid;
+    /** Width of the grid. */
+    private final int width;
+    /** Height of the grid. */
+    private final int height;
+    /** Cached distance fields keyed by target cell, in access order. */
+    private final LinkedHashMap<Integer, int[]> fields;
+    /** The grid's walkVersion when the cached fields were computed. */
+    private int fieldsVersion;
+    /** Number of distance fields taken from the cache. */
+    private long fieldHits;
+    /** Number of distance fields computed. */
+    private long fieldMisses;
+
+    /** Queue of cells for breadth-first search. */
+    private int[] queue;
+    /** Best known cost to each cell in the current search. */
+    private int[] cost;
+    /** Cell each cell was reached from in the current search. */
+    private int[] parent;
+    /** Number of the search that made each cell a target of distancesTo. */
+    private int[] targetMark;
+    /** Number of the search that last touched each cell; cost and parent
+     *  only hold for cells whose mark is the current search. */
+    private int[] mark;
+    /** Number of the current search. */
+    private int search;
+    /** Open list of A* and jump-point search, as (priority << 32 | cell). */
+    private long[] heap = new long[64];
+    /** Number of entries in the heap. */
+    private int heapSize;
+
+    /** Creates a Pathfinder on GRID that keeps DEFAULT_FIELDS fields. */
+    public Pathfinder(WorldGrid grid) {
+        this(grid, DEFAULT_FIELDS);
+    }
+
+    /** Creates a Pathfinder on GRID that keeps up to MAXFIELDS distance
+     *  fields. Each field takes four bytes per cell. */
+    public Pathfinder(WorldGrid grid, int maxFields) {
+        if (maxFields < 1) {
+            throw new IllegalArgumentException("must keep at least one distance field");
+        }
+        this.grid = grid;
+        this.width = grid.width();
+        this.height = grid.height();
+        this.fields = new LinkedHashMap<Integer, int[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, int[]> eldest) {
+                return size() > maxFields;
+            }
+        };
+        this.fieldsVersion = grid.walkVersion();
+    }
+
+    public WorldGrid grid() {
+        return grid;
+    }
+
+    /** Returns the cell (X, Y) packed as x * height + y, the index distance
+     *  fields and paths use. */
+    public int cell(int x, int y) {
+        return x * height + y;
+    }
+
+    /** Returns the x-coordinate of packed CELL. */
+    public int cellX(int cell) {
+        return cell / height;
+    }
+
+    /** Returns the y-coordinate of packed CELL. */
+    public int cellY(int cell) {
+        return cell % height;
+    }
+
+    /** Returns the number of moves from every cell to (X, Y), indexed by
+     *  cell(), with UNREACHABLE where there is no way there. The array is
+     *  shared with the cache and must not be modified. */
+    public int[] distanceField(int x, int y) {
+        if (!grid.inBounds(x, y)) {
+            throw new IllegalArgumentException("(" + x + ", " + y + ") is outside the grid");
+        }
+        if (fieldsVersion != grid.walkVersion()) {
+            fields.clear();
+            fieldsVersion = grid.walkVersion();
+        }
+        int target = cell(x, y);
+        int[] field = fields.get(target);
+        if (field != null) {
+            fieldHits += 1;
+            return field;
+        }
+        fieldMisses += 1;
+        field = breadthFirst(target);
+        fields.put(target, field);
+        return field;
+    }
+
+    /** Returns the number of moves from (FROMX, FROMY) to (TOX, TOY), or
+     *  UNREACHABLE. */
+    public int distance(int fromX, int fromY, int toX, int toY) {
+        return distanceField(toX, toY)[cell(fromX, fromY)];
+    }
+
+    /** Returns whether (TOX, TOY) can be walked to from (FROMX, FROMY). */
+    public boolean reachable(int fromX, int fromY, int toX, int toY) {
+        return distance(fromX, fromY, toX, toY) != UNREACHABLE;
+    }
+
+    /** Returns the number of moves from (X, Y) to each of the packed cells
+     *  in TARGETS, with UNREACHABLE for those it cannot get to. Nothing is
+     *  cached, and the search stops as soon as every target is found, so
+     *  this is the cheaper way to ask about a handful of cells once. */
+    public int[] distancesTo(int x, int y, int[] targets) {
+        int[] rv = new int[targets.length];
+        Arrays.fill(rv, UNREACHABLE);
+        if (!grid.inBounds(x, y) || !grid.walkable(x, y)) {
+            return rv;
+        }
+        int start = cell(x, y);
+        startSearch(start);
+        heapSize = 0;
+        if (targetMark == null) {
+            targetMark = new int[width * height];
+        }
+        int remaining = 0;
+        for (int t : targets) {
+            if (targetMark[t] != search) {
+                targetMark[t] = search;
+                remaining += 1;
+            }
+        }
+        if (queue == null) {
+            queue = new int[width * height];
+        }
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = start;
+        while (head < tail && remaining > 0) {
+            int c = queue[head++];
+            if (targetMark[c] == search) {
+                remaining -= 1;
+            }
+            int y0 = c % height;
+            if (y0 + 1 < height) {
+                tail = visit(c, c + 1, tail);
+            }
+            if (y0 > 0) {
+                tail = visit(c, c - 1, tail);
+            }
+            if (c + height < width * height) {
+                tail = visit(c, c + height, tail);
+            }
+            if (c >= height) {
+                tail = visit(c, c - height, tail);
+            }
+        }
+        for (int i = 0; i < targets.length; i++) {
+            if (mark[targets[i]] == search) {
+                rv[i] = cost[targets[i]];
+            }
+        }
+        return rv;
+    }
+
+    /** Queues cell TO, one move on from cell FROM, at TAIL if it is walkable
+     *  and not yet seen in this search, and returns the new tail. */
+    private int visit(int from, int to, int tail) {
+        if (mark[to] != search && walkable(to)) {
+            mark[to] = search;
+            cost[to] = cost[from] + 1;
+            queue[tail] = to;
+            return tail + 1;
+        }
+        return tail;
+    }
+
+    /** Returns the distance field to TARGET, computed afresh. */
+    private int[] breadthFirst(int target) {
+        int[] field = new int[width * height];
+        Arrays.fill(field, UNREACHABLE);
+        if (!grid.walkable(cellX(target), cellY(target))) {
+            return field;
+        }
+        if (queue == null) {
+            queue = new int[width * height];
+        }
+        int head = 0;
+        int tail = 0;
+        field[target] = 0;
+        queue[tail++] = target;
+        while (head < tail) {
+            int c = queue[head++];
+            int next = field[c] + 1;
+            int y = c % height;
+            if (y + 1 < height && field[c + 1] == UNREACHABLE && walkable(c + 1)) {
+                field[c + 1] = next;
+                queue[tail++] = c + 1;
+            }
+            if (y > 0 && field[c - 1] == UNREACHABLE && walkable(c - 1)) {
+                field[c - 1] = next;
+                queue[tail++] = c - 1;
+            }
+            if (c + height < field.length && field[c + height] == UNREACHABLE
+                    && walkable(c + height)) {
+                field[c + height] = next;
+                queue[tail++] = c + height;
+            }
+            if (c >= height && field[c - height] == UNREACHABLE && walkable(c - height)) {
+                field[c - height] = next;
+                queue[tail++] = c - height;
+            }
+        }
+        return field;
+    }
+
+    /** Returns a shortest path from (FROMX, FROMY) to (TOX, TOY) found with
+     *  A*, as the packed cells from start to end inclusive, or null if there
+     *  is none. */
+    public int[] findPath(int fromX, int fromY, int toX, int toY) {
+        if (!grid.inBounds(fromX, fromY) || !grid.inBounds(toX, toY)
+                || !grid.walkable(fromX, fromY) || !grid.walkable(toX, toY)) {
+            return null;
+        }
+        int start = cell(fromX, fromY);
+        int goal = cell(toX, toY);
+        startSearch(start);
+        while (heapSize > 0) {
+            long top = pop();
+            int c = (int) top;
+            if ((int) (top >>> 32) - heuristic(c, toX, toY) > cost[c]) {
+                continue;
+            }
+            if (c == goal) {
+                return trace(goal, false);
+            }
+            int y = c % height;
+            if (y + 1 < height) {
+                relax(c, c + 1, 1, toX, toY);
+            }
+            if (y > 0) {
+                relax(c, c - 1, 1, toX, toY);
+            }
+            if (c + height < width * height) {
+                relax(c, c + height, 1, toX, toY);
+            }
+            if (c >= height) {
+                relax(c, c - height, 1, toX, toY);
+            }
+        }
+        return null;
+    }
+
+    /** Returns a shortest path from (FROMX, FROMY) to (TOX, TOY) found with
+     *  jump-point search, in the same form as findPath. */
+    public int[] findJumpPath(int fromX, int fromY, int toX, int toY) {
+        if (!grid.inBounds(fromX, fromY) || !grid.inBounds(toX, toY)
+                || !grid.walkable(fromX, fromY) || !grid.walkable(toX, toY)) {
+            return null;
+        }
+        int start = cell(fromX, fromY);
+        int goal = cell(toX, toY);
+        startSearch(start);
+        while (heapSize > 0) {
+            long top = pop();
+            int c = (int) top;
+            if ((int) (top >>> 32) - heuristic(c, toX, toY) > cost[c]) {
+                continue;
+            }
+            if (c == goal) {
+                return trace(goal, true);
+            }
+            int x = cellX(c);
+            int y = cellY(c);
+            int from = parent[c];
+            if (from < 0) {
+                jumpFrom(c, x, y, 1, 0, toX, toY);
+                jumpFrom(c, x, y, -1, 0, toX, toY);
+                jumpFrom(c, x, y, 0, 1, toX, toY);
+                jumpFrom(c, x, y, 0, -1, toX, toY);
+            } else {
+                int dx = Integer.signum(x - cellX(from));
+                int dy = Integer.signum(y - cellY(from));
+                if (dx != 0) {
+                    jumpFrom(c, x, y, dx, 0, toX, toY);
+                    jumpFrom(c, x, y, 0, 1, toX, toY);
+                    jumpFrom(c, x, y, 0, -1, toX, toY);
+                } else {
+                    jumpFrom(c, x, y, 0, dy, toX, toY);
+                    jumpFrom(c, x, y, 1, 0, toX, toY);
+                    jumpFrom(c, x, y, -1, 0, toX, toY);
+                }
+            }
+        }
+        return null;
+    }
+
+    /** Jumps from cell C at (X, Y) in direction (DX, DY) and adds the jump
+     *  point it lands on, if any, to the open list. */
+    private void jumpFrom(int c, int x, int y, int dx, int dy, int goalX, int goalY) {
+        int j = jump(x, y, dx, dy, goalX, goalY);
+        if (j >= 0) {
+            relax(c, j, Math.abs(cellX(j) - x) + Math.abs(cellY(j) - y), goalX, goalY);
+        }
+    }
+
+    /** Walks from (X, Y) in direction (DX, DY) and returns the first jump
+     *  point on the way, or -1 if it runs into a wall first. A jump point is
+     *  the goal, a cell next to the end of a wall along the way, or, when
+     *  moving vertically, a cell a horizontal jump would stop from. */
+    private int jump(int x, int y, int dx, int dy, int goalX, int goalY) {
+        while (true) {
+            x += dx;
+            y += dy;
+            if (!open(x, y)) {
+                return -1;
+            }
+            if (x == goalX && y == goalY) {
+                return cell(x, y);
+            }
+            if (dx != 0) {
+                if ((open(x, y - 1) && !open(x - dx, y - 1))
+                        || (open(x, y + 1) && !open(x - dx, y + 1))) {
+                    return cell(x, y);
+                }
+            } else {
+                if ((open(x - 1, y) && !open(x - 1, y - dy))
+                        || (open(x + 1, y) && !open(x + 1, y - dy))) {
+                    return cell(x, y);
+                }
+                if (jump(x, y, 1, 0, goalX, goalY) >= 0
+                        || jump(x, y, -1, 0, goalX, goalY) >= 0) {
+                    return cell(x, y);
+                }
+            }
+        }
+    }
+
+    /** Starts a new A* or jump-point search from START. */
+    private void startSearch(int start) {
+        if (mark == null) {
+            cost = new int[width * height];
+            parent = new int[width * height];
+            mark = new int[width * height];
+        }
+        search += 1;
+        if (search == 0) {
+            Arrays.fill(mark, 0);
+            if (targetMark != null) {
+                Arrays.fill(targetMark, 0);
+            }
+            search = 1;
+        }
+        heapSize = 0;
+        mark[start] = search;
+        cost[start] = 0;
+        parent[start] = -1;
+        push(0, start);
+    }
+
+    /** Reaches cell TO from cell FROM at STEP more moves, if TO is walkable
+     *  and this is the cheapest way there so far. */
+    private void relax(int from, int to, int step, int goalX, int goalY) {
+        if (!walkable(to)) {
+            return;
+        }
+        int g = cost[from] + step;
+        if (mark[to] != search || g < cost[to]) {
+            mark[to] = search;
+            cost[to] = g;
+            parent[to] = from;
+            push(g + heuristic(to, goalX, goalY), to);
+        }
+    }
+
+    /** Returns the path that ends at GOAL in the current search. If JUMPS,
+     *  consecutive cells may be a straight run apart and are filled in. */
+    private int[] trace(int goal, boolean jumps) {
+        int length = 1;
+        for (int c = goal; parent[c] >= 0; c = parent[c]) {
+            length += jumps ? Math.abs(cellX(c) - cellX(parent[c]))
+                    + Math.abs(cellY(c) - cellY(parent[c])) : 1;
+        }
+        int[] path = new int[length];
+        int i = length - 1;
+        path[i] = goal;
+        for (int c = goal; parent[c] >= 0; c = parent[c]) {
+            int p = parent[c];
+            int step = cellX(c) != cellX(p) ? height * Integer.signum(c - p)
+                    : Integer.signum(c - p);
+            for (int k = c - step; k != p; k -= step) {
+                path[--i] = k;
+            }
+            path[--i] = p;
+        }
+        return path;
+    }
+
+    /** Returns the Manhattan distance from CELL to (GOALX, GOALY). */
+    private int heuristic(int cell, int goalX, int goalY) {
+        return Math.abs(cellX(cell) - goalX) + Math.abs(cellY(cell) - goalY);
+    }
+
+    /** Returns whether packed CELL is walkable. */
+    private boolean walkable(int cell) {
+        return grid.walkableAt(cell);
+    }
+
+    /** Returns whether (X, Y) is inside the grid and walkable. */
+    private boolean open(int x, int y) {
+        return x >= 0 && x < width && y >= 0 && y < height && grid.walkable(x, y);
+    }
+
+    /** Adds CELL to the heap with PRIORITY. */
+    private void push(int priority, int cell) {
+        if (heapSize == heap.length) {
+            heap = Arrays.copyOf(heap, heapSize * 2);
+        }
+        long entry = ((long) priority << 32) | (cell & 0xFFFFFFFFL);
+        int i = heapSize++;
+        while (i > 0 && heap[(i - 1) >>> 1] > entry) {
+            heap[i] = heap[(i - 1) >>> 1];
+            i = (i - 1) >>> 1;
+        }
+        heap[i] = entry;
+    }
+
+    /** Removes and returns the heap entry with the lowest priority. */
+    private long pop() {
+        long top = heap[0];
+        long last = heap[--heapSize];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && heap[child + 1] < heap[child]) {
+                child += 1;
+            }
+            if (heap[child] >= last) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = last;
+        return top;
+    }
+
+    /** Number of distance fields answered from the cache. */
+    public long fieldHits() {
+        return fieldHits;
+    }
+
+    /** Number of distance fields that had to be computed. */
+    public long fieldMisses() {
+        return fieldMisses;
+    }
+}
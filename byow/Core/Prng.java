@@ -0,0 +1,141 @@
+package byow.Core;
+
+import java.util.Random;
+
+/**
+ * A fast, non-thread-safe pseudo-random number generator that can be split
+ * into independent streams and jumped ahead.
+ * <p>
+ * Prng extends {@link Random} so that every {@link RandomUtils} method and
+ * every existing caller that takes a {@code Random} accepts it unchanged.
+ * Unlike {@code Random}, none of its methods synchronize or update an
+ * {@code AtomicLong}, so each instance must stay on one thread; use
+ * {@link #split()} to hand a generator to another thread.
+ */
+public abstract class Prng extends Random {
+
+    /* Second value of the last pair nextGaussian made, and whether it is
+     * still unused. Random's constructor calls setSeed before initializers
+     * run, so these must not have any. */
+    private double nextGaussian;
+    private boolean haveNextGaussian;
+
+    /**
+     * Initializes the generator from {@code seed} through {@link #setSeed(long)}.
+     *
+     * @param seed the seed
+     */
+    protected Prng(long seed) {
+        super(seed);
+    }
+
+    /**
+     * Returns the next 64 random bits. Every other method draws from this one.
+     *
+     * @return a uniformly random {@code long}
+     */
+    @Override
+    public abstract long nextLong();
+
+    /**
+     * Returns a new generator whose stream does not overlap this one's in
+     * practice, advancing this generator so the two stay independent.
+     *
+     * @return a new, independent generator
+     */
+    public abstract Prng split();
+
+    /**
+     * Advances this generator by a fixed, very large number of steps. Calling
+     * {@code jump()} between hand-outs of copies gives non-overlapping
+     * subsequences for parallel work.
+     */
+    public abstract void jump();
+
+    @Override
+    protected int next(int bits) {
+        return (int) (nextLong() >>> (64 - bits));
+    }
+
+    @Override
+    public int nextInt() {
+        return (int) (nextLong() >>> 32);
+    }
+
+    /**
+     * Returns a random integer uniformly in [0, bound), using Lemire's
+     * multiply-and-reject method, which needs a division only on the rare
+     * rejected draw.
+     *
+     * @param bound number of possible integers
+     * @return a random integer uniformly between 0 (inclusive) and {@code bound} (exclusive)
+     * @throws IllegalArgumentException if {@code bound <= 0}
+     */
+    @Override
+    public int nextInt(int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("bound must be positive: " + bound);
+        }
+        long m = (nextLong() >>> 32) * bound;
+        long low = m & 0xFFFFFFFFL;
+        if (low < bound) {
+            long threshold = (0x100000000L - bound) % bound;
+            while (low < threshold) {
+                m = (nextLong() >>> 32) * bound;
+                low = m & 0xFFFFFFFFL;
+            }
+        }
+        return (int) (m >>> 32);
+    }
+
+    @Override
+    public double nextDouble() {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    @Override
+    public float nextFloat() {
+        return (nextLong() >>> 40) * 0x1.0p-24f;
+    }
+
+    @Override
+    public boolean nextBoolean() {
+        return nextLong() < 0;
+    }
+
+    /**
+     * Returns a normally distributed value with mean 0 and standard deviation
+     * 1, by the same polar method as {@link Random#nextGaussian()}, which
+     * makes two values at a time, but without its lock.
+     *
+     * @return a normally distributed {@code double}
+     */
+    @Override
+    public double nextGaussian() {
+        if (haveNextGaussian) {
+            haveNextGaussian = false;
+            return nextGaussian;
+        }
+        double v1;
+        double v2;
+        double s;
+        do {
+            v1 = 2 * nextDouble() - 1;
+            v2 = 2 * nextDouble() - 1;
+            s = v1 * v1 + v2 * v2;
+        } while (s >= 1 || s == 0);
+        double multiplier = StrictMath.sqrt(-2 * StrictMath.log(s) / s);
+        nextGaussian = v2 * multiplier;
+        haveNextGaussian = true;
+        return v1 * multiplier;
+    }
+
+    /**
+     * Drops the value {@link #nextGaussian()} kept for its next call.
+     * Subclasses call this from {@link #setSeed(long)}, as reseeding a
+     * {@code Random} drops it too.
+     */
+    protected final void discardGaussian() {
+        haveNextGaussian = false;
+    }
+}
@@ -9,6 +9,11 @@ import java.util.Random;
  * other randomness related stuff you might want to do. Feel free to
  * modify this file.
  * <p>
+ * Every method takes the generator to draw from. Besides
+ * {@code java.util.Random}, any {@link Prng} ({@link SplitMix64},
+ * {@link Xoshiro256StarStar}) can be passed, which avoids Random's
+ * synchronization and allows splitting one seed into independent streams.
+ * <p>
  * Adapted from https://introcs.cs.princeton.edu/java/22library/StdRandom.java.html
 *
  */
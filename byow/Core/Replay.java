@@ -0,0 +1,120 @@
+package byow.Core;
+
+/** Plays a recorded game back from any of its moves, forwards or backwards.
+ *
+ *  Making a Replay plays every move once and keeps a Checkpoint of the
+ *  world every INTERVAL moves as a keyframe. Seeking restores the generated
+ *  world, applies the nearest keyframe at or before the target and plays
+ *  the rest, so any move is at most INTERVAL - 1 moves away; seeking a
+ *  little way forwards just plays on from where the replay is. Moves are
+ *  played on a headless Engine, so a replay makes no sound. */
+public class Replay {
+    /** Moves between keyframes unless told otherwise. */
+    public static final int KEYFRAME_INTERVAL = 256;
+
+    /** The world as generated, before any move. */
+    private final GeneratedWorld start;
+    /** The moves played back. */
+    private final MoveLog moves;
+    /** Moves between keyframes. */
+    private final int interval;
+    /** Keyframe I is the state after I * interval moves. */
+    private final Checkpoint[] keyframes;
+    /** Engine the moves are played on. */
+    private final Engine engine;
+    /** Number of moves played to reach the current state. */
+    private int position;
+
+    /** Creates a replay of MOVES made in the world START, with a keyframe
+     *  every KEYFRAME_INTERVAL moves. */
+    public Replay(GeneratedWorld start, MoveLog moves) {
+        this(start, moves, KEYFRAME_INTERVAL);
+    }
+
+    /** Creates a replay of MOVES made in the world START, with a keyframe
+     *  every INTERVAL moves. The replay starts at the last move. */
+    public Replay(GeneratedWorld start, MoveLog moves, int interval) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("keyframe interval must be positive");
+        }
+        this.start = start;
+        this.moves = moves;
+        this.interval = interval;
+        engine = new Engine(start.width(), start.height(), Engine.ROOM_ATTEMPTS);
+        engine.setHeadless(true);
+        engine.restore(start);
+        keyframes = new Checkpoint[moves.size() / interval + 1];
+        keyframes[0] = engine.snapshot(0);
+        for (int i = 0; i < moves.size(); i++) {
+            engine.moveToDirection(moves.get(i));
+            if ((i + 1) % interval == 0) {
+                keyframes[(i + 1) / interval] = engine.snapshot(i + 1);
+            }
+        }
+        position = moves.size();
+    }
+
+    /** Returns the number of moves in the replay. */
+    public int length() {
+        return moves.size();
+    }
+
+    /** Returns the number of moves played to reach the current state. */
+    public int position() {
+        return position;
+    }
+
+    /** Puts the replay in the state after the first MOVE moves. */
+    public void seek(int move) {
+        if (move < 0 || move > moves.size()) {
+            throw new IllegalArgumentException("no move " + move + " in a replay of "
+                    + moves.size());
+        }
+        if (move < position || move - position >= interval) {
+            Checkpoint keyframe = keyframes[move / interval];
+            engine.restore(start);
+            engine.resume(keyframe);
+            position = keyframe.moves;
+        }
+        while (position < move) {
+            engine.moveToDirection(moves.get(position));
+            position += 1;
+        }
+    }
+
+    /** Moves the replay COUNT moves forwards, or backwards if COUNT is
+     *  negative, stopping at either end. */
+    public void step(int count) {
+        seek((int) Math.max(0, Math.min(moves.size(), (long) position + count)));
+    }
+
+    /** Returns the world as it is at the current move. */
+    public WorldGrid world() {
+        return engine.worldGrid();
+    }
+
+    /** Returns the x-coordinate of the avatar. */
+    public int playerX() {
+        return engine.playerX();
+    }
+
+    /** Returns the y-coordinate of the avatar. */
+    public int playerY() {
+        return engine.playerY();
+    }
+
+    /** Returns the number of coins collected. */
+    public int coinsCollected() {
+        return engine.coinsCollected();
+    }
+
+    /** Returns the number of moves left. */
+    public int movesLeft() {
+        return engine.movesLeft();
+    }
+
+    /** Returns a checkpoint of the current state. */
+    Checkpoint checkpoint() {
+        return engine.snapshot(position);
+    }
+}
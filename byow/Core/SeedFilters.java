@@ -0,0 +1,118 @@
+package byow.Core;
+
+import java.util.function.Predicate;
+
+/** Ready-made predicates on generated worlds for SeedSearch. Combine them
+ *  with Predicate.and and Predicate.or. Every predicate here is safe to
+ *  test from several threads at once. */
+public final class SeedFilters {
+    /** Shared analyzer; it keeps no state between worlds. */
+    private static final SolvabilityAnalyzer ANALYZER = new SolvabilityAnalyzer();
+
+    private SeedFilters() {
+    }
+
+    /** Passes worlds with between MIN and MAX rooms, inclusive. */
+    public static Predicate<GeneratedWorld> roomCount(int min, int max) {
+        return world -> world.roomCount() >= min && world.roomCount() <= max;
+    }
+
+    /** Passes worlds with between MIN and MAX coins, inclusive. */
+    public static Predicate<GeneratedWorld> coinCount(int min, int max) {
+        return world -> world.coinCount() >= min && world.coinCount() <= max;
+    }
+
+    /** Passes worlds whose longest corridor has at most MAX tiles. */
+    public static Predicate<GeneratedWorld> maxCorridorLength(int max) {
+        return world -> longestCorridor(world) <= max;
+    }
+
+    /** Passes worlds where the coin farthest from the spawn takes between
+     *  MIN and MAX moves to walk to, inclusive. A world with a coin that
+     *  cannot be walked to fails. */
+    public static Predicate<GeneratedWorld> spawnToFarthestCoin(int min, int max) {
+        return world -> {
+            int d = farthestCoin(world);
+            return d >= min && d <= max;
+        };
+    }
+
+    /** Passes worlds SolvabilityAnalyzer judges WINNABLE. */
+    public static Predicate<GeneratedWorld> winnable() {
+        return world -> ANALYZER.analyze(world).verdict() == SolvabilityReport.Verdict.WINNABLE;
+    }
+
+    /** Returns the number of tiles in the largest connected stretch of
+     *  walkable tiles outside every room, walls included. Halls that meet
+     *  count as one corridor. */
+    public static int longestCorridor(GeneratedWorld world) {
+        int w = world.width();
+        int h = world.height();
+        boolean[] corridor = new boolean[w * h];
+        for (int x = 0; x < w; x++) {
+            for (int y = 0; y < h; y++) {
+                corridor[x * h + y] = WorldGrid.walkable(world.get(x, y));
+            }
+        }
+        for (int r = 0; r < world.roomCount(); r++) {
+            for (int x = world.roomX(r); x < world.roomX(r) + world.roomWidth(r); x++) {
+                for (int y = world.roomY(r); y < world.roomY(r) + world.roomHeight(r); y++) {
+                    corridor[x * h + y] = false;
+                }
+            }
+        }
+        int[] stack = new int[w * h];
+        int longest = 0;
+        for (int start = 0; start < corridor.length; start++) {
+            if (!corridor[start]) {
+                continue;
+            }
+            corridor[start] = false;
+            int size = 0;
+            int top = 0;
+            stack[top++] = start;
+            while (top > 0) {
+                int c = stack[--top];
+                size += 1;
+                int y = c % h;
+                if (y + 1 < h && corridor[c + 1]) {
+                    corridor[c + 1] = false;
+                    stack[top++] = c + 1;
+                }
+                if (y > 0 && corridor[c - 1]) {
+                    corridor[c - 1] = false;
+                    stack[top++] = c - 1;
+                }
+                if (c + h < corridor.length && corridor[c + h]) {
+                    corridor[c + h] = false;
+                    stack[top++] = c + h;
+                }
+                if (c >= h && corridor[c - h]) {
+                    corridor[c - h] = false;
+                    stack[top++] = c - h;
+                }
+            }
+            longest = Math.max(longest, size);
+        }
+        return longest;
+    }
+
+    /** Returns the number of moves from the spawn to the coin farthest from
+     *  it, 0 if there are no coins, or Integer.MAX_VALUE if some coin cannot
+     *  be walked to. */
+    public static int farthestCoin(GeneratedWorld world) {
+        Pathfinder paths = new Pathfinder(world.grid(), 1);
+        int[] coins = new int[world.coinCount()];
+        for (int i = 0; i < coins.length; i++) {
+            coins[i] = paths.cell(world.coinX(i), world.coinY(i));
+        }
+        int farthest = 0;
+        for (int d : paths.distancesTo(world.spawnX(), world.spawnY(), coins)) {
+            if (d == Pathfinder.UNREACHABLE) {
+                return Integer.MAX_VALUE;
+            }
+            farthest = Math.max(farthest, d);
+        }
+        return farthest;
+    }
+}
@@ -0,0 +1,198 @@
+package byow.Core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/** Scans ranges of seeds in parallel for worlds that pass a predicate.
+ *
+ *  Every worker on the pool claims blocks of BLOCK consecutive seeds from a
+ *  shared cursor, generates each seed with Engine.generate and hands the
+ *  worlds that pass to the sink straight away, so matches stream out while
+ *  the scan goes on. Once the limit is reached workers stop claiming blocks
+ *  and drop the rest of the block they are in. Exactly the limit is handed
+ *  out unless the range runs out first, but which matching seeds make it
+ *  depends on scheduling. SeedFilters has ready-made predicates.
+ *
+ *  A SeedSearch runs one scan at a time; its counters can be read from any
+ *  thread while it runs. */
+public class SeedSearch {
+    /** Number of seeds a worker claims at once. */
+    private static final int BLOCK = 64;
+
+    /** Counters of a running or finished scan. */
+    public static final class Progress {
+        /** Number of seeds generated and tested. */
+        private final long scanned;
+        /** Number of seeds that passed. */
+        private final long matched;
+        /** Nanoseconds since the scan started. */
+        private final long elapsedNanos;
+
+        Progress(long scanned, long matched, long elapsedNanos) {
+            this.scanned = scanned;
+            this.matched = matched;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public long scanned() {
+            return scanned;
+        }
+
+        public long matched() {
+            return matched;
+        }
+
+        public long elapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /** Seeds tested per second so far. */
+        public double seedsPerSecond() {
+            return elapsedNanos == 0 ? 0 : scanned * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d seeds scanned, %d matched, %.0f seeds/s",
+                    scanned, matched, seedsPerSecond());
+        }
+    }
+
+    /** Pool the workers run on. */
+    private final ForkJoinPool pool;
+    /** Generator version the seeds are generated with. */
+    private final int version;
+    /** Called with the progress every reportNanos, or null. */
+    private Consumer<Progress> listener;
+    /** Nanoseconds between progress reports. */
+    private long reportNanos;
+
+    /** Next seed no worker has claimed. */
+    private final AtomicLong cursor = new AtomicLong();
+    /** Number of seeds tested in the current scan. */
+    private final AtomicLong scanned = new AtomicLong();
+    /** Number of matches in the current scan, which may run past limit. */
+    private final AtomicLong matched = new AtomicLong();
+    /** Largest number of matches the current scan hands out. */
+    private volatile long limit;
+    /** System.nanoTime() of the last progress report. */
+    private final AtomicLong lastReport = new AtomicLong();
+    /** System.nanoTime() when the current scan started. */
+    private volatile long startNanos;
+    /** System.nanoTime() when the current scan ended, or 0 while it runs. */
+    private volatile long endNanos;
+
+    /** Creates a search on the common fork-join pool with the current
+     *  generator. */
+    public SeedSearch() {
+        this(ForkJoinPool.commonPool(), Engine.GENERATOR_VERSION);
+    }
+
+    /** Creates a search that runs on POOL and generates worlds with
+     *  generator VERSION. */
+    public SeedSearch(ForkJoinPool pool, int version) {
+        if (!Engine.supportsGenerator(version)) {
+            throw new IllegalArgumentException("unknown generator version " + version);
+        }
+        this.pool = pool;
+        this.version = version;
+    }
+
+    /** Calls LISTENER with the progress of a scan about every INTERVALMILLIS
+     *  milliseconds, from whichever worker notices first. */
+    public void setProgressListener(Consumer<Progress> listener, long intervalMillis) {
+        this.listener = listener;
+        this.reportNanos = intervalMillis * 1_000_000L;
+    }
+
+    /** Tests seeds FROM (inclusive) to TO (exclusive) against FILTER and hands
+     *  each world that passes to SINK, until LIMIT worlds have passed or the
+     *  range is done. SINK may be called from several threads at once and in
+     *  any seed order. Returns the final progress. */
+    public Progress search(long from, long to, long limit, Predicate<? super GeneratedWorld> filter,
+                           Consumer<? super GeneratedWorld> sink) {
+        if (from > to || limit < 1) {
+            throw new IllegalArgumentException("need a seed range and a positive limit");
+        }
+        cursor.set(from);
+        scanned.set(0);
+        matched.set(0);
+        this.limit = limit;
+        startNanos = System.nanoTime();
+        lastReport.set(startNanos);
+        endNanos = 0;
+        List<ForkJoinTask<?>> workers = new ArrayList<>();
+        for (int i = 0; i < pool.getParallelism(); i++) {
+            workers.add(pool.submit(() -> work(from, to, limit, filter, sink)));
+        }
+        for (ForkJoinTask<?> worker : workers) {
+            worker.join();
+        }
+        endNanos = System.nanoTime();
+        Progress rv = progress();
+        if (listener != null) {
+            listener.accept(rv);
+        }
+        return rv;
+    }
+
+    /** Same as search, but returns the matching worlds in seed order
+     *  instead of streaming them. */
+    public List<GeneratedWorld> findAll(long from, long to, long limit,
+                                        Predicate<? super GeneratedWorld> filter) {
+        List<GeneratedWorld> rv = new ArrayList<>();
+        search(from, to, limit, filter, world -> {
+            synchronized (rv) {
+                rv.add(world);
+            }
+        });
+        rv.sort((a, b) -> Long.compare(a.seed(), b.seed()));
+        return rv;
+    }
+
+    /** Claims and scans blocks of seeds in [FROM, TO) until the range or the
+     *  LIMIT runs out. */
+    private void work(long from, long to, long limit, Predicate<? super GeneratedWorld> filter,
+                      Consumer<? super GeneratedWorld> sink) {
+        while (matched.get() < limit) {
+            long first = cursor.getAndAdd(BLOCK);
+            // The cursor wraps around past Long.MAX_VALUE
+            if (first >= to || first < from) {
+                return;
+            }
+            long last = Long.compareUnsigned(to - first, BLOCK) <= 0 ? to : first + BLOCK;
+            for (long seed = first; seed < last && matched.get() < limit; seed++) {
+                GeneratedWorld world = Engine.generate(seed, version);
+                scanned.incrementAndGet();
+                if (filter.test(world) && matched.incrementAndGet() <= limit) {
+                    sink.accept(world);
+                }
+            }
+            report();
+        }
+    }
+
+    /** Hands the progress to the listener if a report is due. */
+    private void report() {
+        if (listener == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        long last = lastReport.get();
+        if (now - last >= reportNanos && lastReport.compareAndSet(last, now)) {
+            listener.accept(progress());
+        }
+    }
+
+    /** Returns the counters of the current or last scan. */
+    public Progress progress() {
+        long end = endNanos;
+        return new Progress(scanned.get(), Math.min(matched.get(), limit),
+                (end == 0 ? System.nanoTime() : end) - startNanos);
+    }
+}
@@ -0,0 +1,229 @@
+package byow.Core;
+
+import java.util.Arrays;
+
+/** Works out whether the avatar of a generated world can collect every coin
+ *  within its move budget of MOVES_PER_ROOM per room, and how tight that is.
+ *
+ *  Distances between the spawn and the coins come from a breadth-first
+ *  search per point (Pathfinder.distancesTo). A route that starts at the
+ *  spawn and visits every coin is built by always walking to the nearest
+ *  coin left, then shortened with 2-opt; its length is what the player needs
+ *  at most. A minimum spanning tree over the same points, with no edge
+ *  costing more than a teleport, gives a length no route can beat, since a
+ *  teleport may land right on a coin. A coin that cannot be walked to can
+ *  still be reached by teleporting, which costs TELEPORT_COST but lands in
+ *  a random room, so routes that need one are counted at the expected
+ *  number of teleports and judged UNCERTAIN.
+ *
+ *  An analyzer holds no state between worlds, so one per thread can score
+ *  seeds in parallel. */
+public class SolvabilityAnalyzer {
+    /** Largest number of 2-opt passes over a route. */
+    private static final int MAX_PASSES = 32;
+
+    /** Returns the report for SEED as generated by generator VERSION. */
+    public SolvabilityReport analyze(long seed, int version) {
+        return analyze(Engine.generate(seed, version));
+    }
+
+    /** Returns the report for WORLD. */
+    public SolvabilityReport analyze(GeneratedWorld world) {
+        Pathfinder paths = new Pathfinder(world.grid(), 1);
+        int coins = world.coinCount();
+        int n = coins + 1;
+        // Point 0 is the spawn and point i the coin i - 1
+        int[] points = new int[n];
+        points[0] = paths.cell(world.spawnX(), world.spawnY());
+        for (int i = 1; i < n; i++) {
+            points[i] = paths.cell(world.coinX(i - 1), world.coinY(i - 1));
+        }
+        // Distances are symmetric, so each search only looks for the points after its own
+        int[][] dist = new int[n][n];
+        for (int i = 0; i < n - 1; i++) {
+            int[] later = paths.distancesTo(paths.cellX(points[i]), paths.cellY(points[i]),
+                    Arrays.copyOfRange(points, i + 1, n));
+            for (int k = 0; k < later.length; k++) {
+                dist[i][i + 1 + k] = later[k];
+                dist[i + 1 + k][i] = later[k];
+            }
+        }
+        int walkable = 0;
+        for (int i = 1; i < n; i++) {
+            if (dist[0][i] != Pathfinder.UNREACHABLE) {
+                walkable += 1;
+            }
+        }
+        int budget = world.roomCount() * Engine.MOVES_PER_ROOM;
+        int lowerBound = spanningTree(dist);
+
+        int[][] cost = dist;
+        if (walkable < coins) {
+            cost = withTeleports(world, paths, points, dist);
+            if (cost == null) {
+                return new SolvabilityReport(world.seed(), world.version(), coins, walkable,
+                        budget, Integer.MAX_VALUE, lowerBound,
+                        SolvabilityReport.Verdict.UNWINNABLE);
+            }
+        }
+        int[] route = nearestNeighbour(cost);
+        if (cost == dist) {
+            twoOpt(route, dist);
+        }
+        int estimate = length(route, cost);
+
+        SolvabilityReport.Verdict verdict;
+        if (lowerBound > budget) {
+            verdict = SolvabilityReport.Verdict.UNWINNABLE;
+        } else if (walkable == coins && estimate <= budget) {
+            verdict = SolvabilityReport.Verdict.WINNABLE;
+        } else {
+            verdict = SolvabilityReport.Verdict.UNCERTAIN;
+        }
+        return new SolvabilityReport(world.seed(), world.version(), coins, walkable, budget,
+                estimate, lowerBound, verdict);
+    }
+
+    /** Returns DIST with every missing distance replaced by the expected
+     *  cost of teleporting until the avatar lands in a room it can walk to
+     *  the point from, plus the mean walk from those rooms' centres; returns
+     *  null if some point cannot be walked to from any room. */
+    private int[][] withTeleports(GeneratedWorld world, Pathfinder paths, int[] points,
+                                  int[][] dist) {
+        int rooms = world.roomCount();
+        int[] centres = new int[rooms];
+        for (int r = 0; r < rooms; r++) {
+            centres[r] = paths.cell(world.roomX(r) + world.roomWidth(r) / 2,
+                    world.roomY(r) + world.roomHeight(r) / 2);
+        }
+        int n = points.length;
+        int[] arrive = new int[n];
+        for (int j = 1; j < n; j++) {
+            int[] fromCentres = paths.distancesTo(paths.cellX(points[j]),
+                    paths.cellY(points[j]), centres);
+            long walk = 0;
+            int landings = 0;
+            for (int d : fromCentres) {
+                if (d != Pathfinder.UNREACHABLE) {
+                    walk += d;
+                    landings += 1;
+                }
+            }
+            if (landings == 0) {
+                return null;
+            }
+            arrive[j] = (int) (((long) Engine.TELEPORT_COST * rooms + walk) / landings);
+        }
+        int[][] rv = new int[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                rv[i][j] = dist[i][j] != Pathfinder.UNREACHABLE ? dist[i][j] : arrive[j];
+            }
+        }
+        return rv;
+    }
+
+    /** Returns the weight of a minimum spanning tree over the points of
+     *  DIST, where getting from one point to another costs the walk between
+     *  them or TELEPORT_COST, whichever is less: a teleport can land on a
+     *  coin in the middle of a room, however far it is, and the walk is
+     *  missing for points that cannot walk to each other. Every route visits
+     *  all the points at that cost or more per leg, so none is shorter. */
+    private static int spanningTree(int[][] dist) {
+        int n = dist.length;
+        boolean[] inTree = new boolean[n];
+        int[] best = new int[n];
+        Arrays.fill(best, Integer.MAX_VALUE);
+        best[0] = 0;
+        int total = 0;
+        for (int k = 0; k < n; k++) {
+            int next = -1;
+            for (int i = 0; i < n; i++) {
+                if (!inTree[i] && (next < 0 || best[i] < best[next])) {
+                    next = i;
+                }
+            }
+            inTree[next] = true;
+            total += best[next];
+            for (int i = 0; i < n; i++) {
+                int d = dist[next][i] == Pathfinder.UNREACHABLE
+                        ? Engine.TELEPORT_COST : Math.min(dist[next][i], Engine.TELEPORT_COST);
+                if (!inTree[i] && d < best[i]) {
+                    best[i] = d;
+                }
+            }
+        }
+        return total;
+    }
+
+    /** Returns a route over the points of COST that starts at point 0 and
+     *  always moves on to the nearest point not yet visited. */
+    private static int[] nearestNeighbour(int[][] cost) {
+        int n = cost.length;
+        int[] route = new int[n];
+        boolean[] visited = new boolean[n];
+        visited[0] = true;
+        for (int k = 1; k < n; k++) {
+            int from = route[k - 1];
+            int next = -1;
+            for (int i = 1; i < n; i++) {
+                if (!visited[i] && (next < 0 || cost[from][i] < cost[from][next])) {
+                    next = i;
+                }
+            }
+            visited[next] = true;
+            route[k] = next;
+        }
+        return route;
+    }
+
+    /** Shortens ROUTE in place by reversing stretches of it while that helps.
+     *  The route keeps starting at point 0 and has no way back, so the last
+     *  stretch may be reversed freely. DIST must be symmetric. */
+    private static void twoOpt(int[] route, int[][] dist) {
+        int n = route.length;
+        boolean improved = true;
+        for (int pass = 0; improved && pass < MAX_PASSES; pass++) {
+            improved = false;
+            for (int i = 0; i < n - 2; i++) {
+                int a = route[i];
+                int b = route[i + 1];
+                for (int j = i + 2; j < n; j++) {
+                    int c = route[j];
+                    int removed = dist[a][b];
+                    int added = dist[a][c];
+                    if (j + 1 < n) {
+                        int d = route[j + 1];
+                        removed += dist[c][d];
+                        added += dist[b][d];
+                    }
+                    if (added < removed) {
+                        reverse(route, i + 1, j);
+                        b = route[i + 1];
+                        improved = true;
+                    }
+                }
+            }
+        }
+    }
+
+    /** Reverses ROUTE[FROM..TO]. */
+    private static void reverse(int[] route, int from, int to) {
+        while (from < to) {
+            int t = route[from];
+            route[from] = route[to];
+            route[to] = t;
+            from += 1;
+            to -= 1;
+        }
+    }
+
+    /** Returns the length of ROUTE under COST. */
+    private static int length(int[] route, int[][] cost) {
+        int total = 0;
+        for (int k = 1; k < route.length; k++) {
+            total += cost[route[k - 1]][route[k]];
+        }
+        return total;
+    }
+}
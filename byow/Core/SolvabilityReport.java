@@ -0,0 +1,90 @@
+package byow.Core;
+
+/** What SolvabilityAnalyzer found out about one generated world. */
+public final class SolvabilityReport {
+    /** How sure the analyzer is about a world. */
+    public enum Verdict {
+        /** Every coin can be walked to, and the route found fits the budget. */
+        WINNABLE,
+        /** Even the best route would overrun the budget, or a coin cannot be
+         *  reached at all. */
+        UNWINNABLE,
+        /** The route found does not fit, or needs teleports, whose landing
+         *  rooms are random, but the world may still be won. */
+        UNCERTAIN
+    }
+
+    /** Seed the world was generated from. */
+    private final long seed;
+    /** Generator version that produced the world. */
+    private final int version;
+    /** Number of coins in the world. */
+    private final int coins;
+    /** Number of coins the avatar can walk to from its spawn. */
+    private final int walkableCoins;
+    /** Moves the avatar is given. */
+    private final int moveBudget;
+    /** Moves the route found takes, counting teleports at their expected cost. */
+    private final int estimatedMoves;
+    /** Moves no route can do better than. */
+    private final int lowerBound;
+    /** The analyzer's conclusion. */
+    private final Verdict verdict;
+
+    SolvabilityReport(long seed, int version, int coins, int walkableCoins, int moveBudget,
+                      int estimatedMoves, int lowerBound, Verdict verdict) {
+        this.seed = seed;
+        this.version = version;
+        this.coins = coins;
+        this.walkableCoins = walkableCoins;
+        this.moveBudget = moveBudget;
+        this.estimatedMoves = estimatedMoves;
+        this.lowerBound = lowerBound;
+        this.verdict = verdict;
+    }
+
+    public long seed() {
+        return seed;
+    }
+
+    public int version() {
+        return version;
+    }
+
+    public int coins() {
+        return coins;
+    }
+
+    public int walkableCoins() {
+        return walkableCoins;
+    }
+
+    public int moveBudget() {
+        return moveBudget;
+    }
+
+    public int estimatedMoves() {
+        return estimatedMoves;
+    }
+
+    public int lowerBound() {
+        return lowerBound;
+    }
+
+    public Verdict verdict() {
+        return verdict;
+    }
+
+    /** Returns the share of the move budget the route found uses: below 1
+     *  leaves moves to spare, above 1 overruns. */
+    public double difficulty() {
+        return moveBudget == 0 ? Double.POSITIVE_INFINITY : (double) estimatedMoves / moveBudget;
+    }
+
+    @Override
+    public String toString() {
+        return "seed " + seed + " v" + version + ": " + verdict + ", " + walkableCoins + "/"
+                + coins + " coins walkable, route " + estimatedMoves + " (at least "
+                + lowerBound + ") of " + moveBudget + " moves";
+    }
+}
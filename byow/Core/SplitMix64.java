@@ -0,0 +1,100 @@
+package byow.Core;
+
+/**
+ * The SplitMix64 generator: a 64-bit counter advanced by an odd "gamma" and
+ * passed through a mixing function. Jumping ahead any number of steps is a
+ * single multiply-add, which makes it a good seeder for other generators
+ * and for per-key streams such as one stream per chunk.
+ * <p>
+ * Algorithm by Steele, Lea and Flood, "Fast Splittable Pseudorandom Number
+ * Generators" (OOPSLA 2014).
+ */
+public class SplitMix64 extends Prng {
+    /** Default gamma: the odd integer closest to 2^64 / phi. */
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    /** Number of steps jump() advances by. */
+    private static final long JUMP_STEPS = 1L << 48;
+
+    /** Counter, advanced by gamma on every draw. Set by setSeed, which
+     *  Random's constructor calls, so it must not have an initializer. */
+    private long state;
+    /** Odd increment of this stream. */
+    private long gamma;
+
+    /**
+     * Creates a generator whose stream is fully determined by {@code seed}.
+     *
+     * @param seed the initial state
+     */
+    public SplitMix64(long seed) {
+        super(seed);
+    }
+
+    /** Creates a generator with the given state and (odd) gamma. */
+    private SplitMix64(long state, long gamma) {
+        super(0);
+        this.state = state;
+        this.gamma = gamma;
+    }
+
+    @Override
+    public void setSeed(long seed) {
+        state = seed;
+        gamma = GOLDEN_GAMMA;
+        discardGaussian();
+    }
+
+    @Override
+    public long nextLong() {
+        state += gamma;
+        return mix(state);
+    }
+
+    /**
+     * Returns a generator seeded and with a gamma drawn from this one, as
+     * {@link java.util.SplittableRandom#split()} does.
+     *
+     * @return a new, independent generator
+     */
+    @Override
+    public SplitMix64 split() {
+        long s = nextLong();
+        return new SplitMix64(s, mixGamma(state += gamma));
+    }
+
+    @Override
+    public void jump() {
+        advance(JUMP_STEPS);
+    }
+
+    /**
+     * Advances this generator as if {@code steps} values had been drawn.
+     *
+     * @param steps number of draws to skip; may be negative to go back
+     */
+    public void advance(long steps) {
+        state += steps * gamma;
+    }
+
+    /**
+     * The SplitMix64 output function: spreads the bits of {@code z} over the
+     * whole {@code long}. Also handy on its own to hash keys into seeds.
+     *
+     * @param z the value to mix
+     * @return the mixed value
+     */
+    public static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /** Turns Z into an odd gamma with enough bit transitions to mix well. */
+    private static long mixGamma(long z) {
+        z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL;
+        z = (z ^ (z >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        z = (z ^ (z >>> 33)) | 1L;
+        int n = Long.bitCount(z ^ (z >>> 1));
+        return (n < 24) ? z ^ 0xAAAAAAAAAAAAAAAAL : z;
+    }
+}
@@ -0,0 +1,51 @@
+package byow.Core;
+
+import java.util.Random;
+
+/** A java.util.Random that produces exactly the same numbers for the same
+ *  seed, but whose internal state can be read and restored. This lets a
+ *  cached or checkpointed world resume its random stream where generation
+ *  left it. It also skips the atomic update Random pays on every draw, so
+ *  it must not be shared between threads. */
+class StateRandom extends Random {
+    /** Multiplier of the linear congruential generator used by Random. */
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+    /** Increment of the linear congruential generator used by Random. */
+    private static final long ADDEND = 0xBL;
+    /** Random keeps 48 bits of state. */
+    private static final long MASK = (1L << 48) - 1;
+
+    /** Current 48-bit state. Set by setSeed, which Random's constructor
+     *  calls, so it must not have an initializer. */
+    private long state;
+
+    /** Creates a generator that matches new Random(SEED). */
+    StateRandom(long seed) {
+        super(seed);
+    }
+
+    /** Returns a generator whose next draw is the one that followed when a
+     *  generator's state() returned STATE. */
+    static StateRandom fromState(long state) {
+        StateRandom rv = new StateRandom(0);
+        rv.state = state & MASK;
+        return rv;
+    }
+
+    /** Returns the current internal state, for use with fromState. */
+    long state() {
+        return state;
+    }
+
+    @Override
+    public void setSeed(long seed) {
+        super.setSeed(seed);
+        state = (seed ^ MULTIPLIER) & MASK;
+    }
+
+    @Override
+    protected int next(int bits) {
+        state = (state * MULTIPLIER + ADDEND) & MASK;
+        return (int) (state >>> (48 - bits));
+    }
+}
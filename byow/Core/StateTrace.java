@@ -0,0 +1,92 @@
+package byow.Core;
+
+import java.util.Arrays;
+
+/** The hash of a game's state after each of a run of its moves, used to
+ *  check that a load or replay goes through exactly the states the original
+ *  run did without comparing whole worlds.
+ *
+ *  Hashes come from Engine.stateHash, which combines the Zobrist hash of
+ *  the world with the avatar's position, the counters and the random state
+ *  teleports draw from. A trace may start after the first move, as one does
+ *  when a game resumes from a checkpoint; first() says where. */
+public class StateTrace {
+    /** Number of moves made before the first hash. */
+    private final int first;
+    /** Hash I is the state after first + I + 1 moves. */
+    private long[] hashes;
+    /** Number of hashes recorded. */
+    private int size;
+
+    /** Creates an empty trace of the moves after the first FIRST. */
+    public StateTrace(int first) {
+        this.first = first;
+        hashes = new long[16];
+    }
+
+    /** Records HASH as the state after the next move. */
+    public void add(long hash) {
+        if (size == hashes.length) {
+            hashes = Arrays.copyOf(hashes, size * 2);
+        }
+        hashes[size] = hash;
+        size += 1;
+    }
+
+    /** Returns the number of moves made before the first hash. */
+    public int first() {
+        return first;
+    }
+
+    /** Returns the number of moves the trace covers, ending after move
+     *  first() + size(). */
+    public int size() {
+        return size;
+    }
+
+    /** Returns the hash of the state after MOVES moves. */
+    public long hashAfter(int moves) {
+        if (moves <= first || moves > first + size) {
+            throw new IndexOutOfBoundsException("no hash after move " + moves);
+        }
+        return hashes[moves - first - 1];
+    }
+
+    /** Returns the number of moves after which this trace and OTHER first
+     *  differ, or -1 if they agree wherever both have a hash. */
+    public int firstDivergence(StateTrace other) {
+        int from = Math.max(first, other.first) + 1;
+        int to = Math.min(first + size, other.first + other.size);
+        for (int m = from; m <= to; m++) {
+            if (hashAfter(m) != other.hashAfter(m)) {
+                return m;
+            }
+        }
+        return -1;
+    }
+
+    /** Returns the trace of playing MOVES in the world START. */
+    public static StateTrace of(GeneratedWorld start, MoveLog moves) {
+        Engine engine = new Engine(start.width(), start.height(), Engine.ROOM_ATTEMPTS);
+        engine.setHeadless(true);
+        engine.restore(start);
+        StateTrace rv = new StateTrace(0);
+        for (int i = 0; i < moves.size(); i++) {
+            engine.moveToDirection(moves.get(i));
+            rv.add(engine.stateHash());
+        }
+        return rv;
+    }
+
+    /** Replays the moves ENGINE logged, from the world its seed generates,
+     *  and returns the number of moves after which the state first differs
+     *  from the trace ENGINE recorded, or -1 if every step matches. ENGINE
+     *  must have been tracing since its game started or was loaded. */
+    public static int verify(Engine engine) {
+        StateTrace recorded = engine.trace();
+        if (recorded == null) {
+            throw new IllegalArgumentException("engine has not been tracing");
+        }
+        return of(engine.generated(), engine.moves()).firstDivergence(recorded);
+    }
+}
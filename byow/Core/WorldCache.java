@@ -0,0 +1,150 @@
+package byow.Core;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** Remembers generated worlds by seed, generator version and world size so
+ *  loads and replays of a seed seen before skip generation.
+ *
+ *  The first tier is an in-process least-recently-used map of immutable
+ *  GeneratedWorlds. The optional second tier is a directory holding one
+ *  serialized world per (version, size, seed); a world found there is promoted to
+ *  memory. A world found in neither is generated and stored in both. All
+ *  methods are safe to call from several threads. */
+public class WorldCache {
+    /** Number of worlds the shared cache keeps in memory. */
+    public static final int DEFAULT_CAPACITY = 256;
+    /** The cache Engine.loadGameworld uses. */
+    private static final WorldCache GLOBAL = new WorldCache(DEFAULT_CAPACITY);
+
+    /** Largest number of worlds kept in memory. */
+    private final int capacity;
+    /** Worlds in memory, keyed by key, in access order. */
+    private final LinkedHashMap<String, GeneratedWorld> memory;
+    /** Directory of the on-disk tier, or null when it is turned off. */
+    private File diskStore;
+    /** Number of lookups answered from memory. */
+    private long hits;
+    /** Number of lookups answered from disk. */
+    private long diskHits;
+    /** Number of lookups that had to generate the world. */
+    private long misses;
+
+    /** Creates a cache that keeps up to CAPACITY worlds in memory and has
+     *  no on-disk tier. */
+    public WorldCache(int capacity) {
+        this.capacity = capacity;
+        this.memory = new LinkedHashMap<String, GeneratedWorld>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, GeneratedWorld> eldest) {
+                return size() > WorldCache.this.capacity;
+            }
+        };
+    }
+
+    /** Returns the cache shared by every Engine in this process. */
+    public static WorldCache global() {
+        return GLOBAL;
+    }
+
+    /** Turns the on-disk tier on, storing worlds in DIR, or off if DIR is
+     *  null. DIR is created if it does not exist. */
+    public synchronized void setDiskStore(File dir) {
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IllegalArgumentException("cannot create " + dir);
+        }
+        diskStore = dir;
+    }
+
+    /** Returns the world for SEED as generated by generator VERSION on an
+     *  Engine of the default size, generating it if no tier has it. */
+    public GeneratedWorld get(long seed, int version) {
+        return get(seed, version, Engine.WIDTH, Engine.HEIGHT, Engine.ROOM_ATTEMPTS);
+    }
+
+    /** Returns the world for SEED as generated by generator VERSION on an
+     *  Engine whose world is WIDTH x HEIGHT and whose generator tries
+     *  ROOMATTEMPTS rooms, generating it if no tier has it. */
+    public GeneratedWorld get(long seed, int version, int width, int height, int roomAttempts) {
+        String key = key(seed, version, width, height, roomAttempts);
+        File file;
+        synchronized (this) {
+            GeneratedWorld found = memory.get(key);
+            if (found != null) {
+                hits += 1;
+                return found;
+            }
+            file = diskStore == null ? null : Utils.join(diskStore, key + ".world");
+        }
+        GeneratedWorld world = file == null ? null
+                : readFromDisk(file, seed, version, width, height);
+        if (world == null) {
+            if (!Engine.supportsGenerator(version)) {
+                throw new IllegalArgumentException("cannot generate worlds for generator "
+                        + version);
+            }
+            world = Engine.generate(seed, version, width, height, roomAttempts);
+            if (file != null) {
+                Utils.writeObject(file, world);
+            }
+            synchronized (this) {
+                misses += 1;
+            }
+        }
+        synchronized (this) {
+            memory.put(key, world);
+        }
+        return world;
+    }
+
+    /** Returns the world stored in FILE if it is a readable WIDTH x HEIGHT
+     *  world for SEED and VERSION, and null otherwise. */
+    private GeneratedWorld readFromDisk(File file, long seed, int version, int width,
+                                        int height) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            GeneratedWorld world = Utils.readObject(file, GeneratedWorld.class);
+            if (world.seed() == seed && world.version() == version
+                    && world.width() == width && world.height() == height) {
+                synchronized (this) {
+                    diskHits += 1;
+                }
+                return world;
+            }
+        } catch (IllegalArgumentException excp) {
+            // A torn or stale file is treated as missing and rewritten.
+        }
+        return null;
+    }
+
+    /** Drops every world held in memory. The on-disk tier is kept. */
+    public synchronized void clear() {
+        memory.clear();
+    }
+
+    public synchronized int size() {
+        return memory.size();
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long diskHits() {
+        return diskHits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    /** Returns the key a world for SEED, VERSION and an Engine of WIDTH x
+     *  HEIGHT trying ROOMATTEMPTS rooms is stored under. */
+    private static String key(long seed, int version, int width, int height,
+                              int roomAttempts) {
+        return "v" + version + "-" + width + "x" + height + "x" + roomAttempts + "-" + seed;
+    }
+}
@@ -0,0 +1,315 @@
+package byow.Core;
+
+import byow.TileEngine.TETile;
+import byow.TileEngine.Tileset;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Random;
+
+/** Represents the playing area as a flat array of tile ids. Each id is an
+ *  index into a fixed palette of Tileset tiles, so a cell costs one byte
+ *  instead of an object reference, and a TETile[][] is only built when
+ *  one is asked for. */
+public class WorldGrid implements Serializable {
+    /** Id of Tileset.NOTHING. Freshly created grids are filled with it. */
+    public static final byte NOTHING = 0;
+    /** Id of Tileset.FLOOR. */
+    public static final byte FLOOR = 1;
+    /** Id of Tileset.WALL. */
+    public static final byte WALL = 2;
+    /** Id of Tileset.AVATAR. */
+    public static final byte AVATAR = 3;
+    /** Id of Tileset.COIN. */
+    public static final byte COIN = 4;
+    /** Maps each tile id to the tile it stands for. */
+    private static final TETile[] PALETTE = {
+        Tileset.NOTHING, Tileset.FLOOR, Tileset.WALL, Tileset.AVATAR, Tileset.COIN
+    };
+
+    /** Width of the grid in tiles. */
+    private final int width;
+    /** Height of the grid in tiles. */
+    private final int height;
+    /** Tile ids stored column by column, so (x, y) lives at x * height + y. */
+    private final byte[] tiles;
+    /** Occupancy of the cells, built on the first isEmpty query and kept in
+     *  step with set() until released. */
+    private transient OccupancyIndex occupancy;
+    /** The cells made FLOOR since trackFloors(), or null. */
+    private transient FloorIndex floors;
+    /** Counts the set() calls that turned a cell walkable or unwalkable, so
+     *  whatever was worked out from walkability can tell it is stale. */
+    private transient int walkVersion;
+    /** Zobrist hash of the tiles: the XOR of a fixed random key for every
+     *  cell and the id in it, kept up to date by set(). */
+    private transient long zobrist;
+
+    /** Creates a WIDTH by HEIGHT grid filled with NOTHING. */
+    public WorldGrid(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.tiles = new byte[width * height];
+    }
+
+    /** Creates a grid that shares nothing with OTHER but its contents. */
+    public WorldGrid(WorldGrid other) {
+        this.width = other.width;
+        this.height = other.height;
+        this.tiles = Arrays.copyOf(other.tiles, other.tiles.length);
+        this.zobrist = other.zobrist;
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    /** Returns the tile id at (X, Y). */
+    public byte get(int x, int y) {
+        return tiles[x * height + y];
+    }
+
+    /** Sets the tile id at (X, Y) to ID. */
+    public void set(int x, int y, byte id) {
+        int k = x * height + y;
+        if (walkable(tiles[k]) != walkable(id)) {
+            walkVersion += 1;
+        }
+        zobrist ^= key(k, tiles[k]) ^ key(k, id);
+        tiles[k] = id;
+        if (occupancy != null) {
+            occupancy.set(x, y, id != NOTHING);
+        }
+        if (floors != null && id == FLOOR) {
+            floors.add(k);
+        }
+    }
+
+    /** Returns whether the avatar can stand on a tile with id ID. */
+    public static boolean walkable(byte id) {
+        return id == FLOOR || id == COIN || id == AVATAR;
+    }
+
+    /** Returns whether the avatar can stand on (X, Y). */
+    public boolean walkable(int x, int y) {
+        return walkable(tiles[x * height + y]);
+    }
+
+    /** Returns whether the avatar can stand on the cell stored at index K,
+     *  that is (K / height, K % height). */
+    boolean walkableAt(int k) {
+        return walkable(tiles[k]);
+    }
+
+    /** Returns a number that changes whenever a cell becomes walkable or
+     *  stops being walkable. Moving the avatar or picking up a coin leaves
+     *  it alone. */
+    public int walkVersion() {
+        return walkVersion;
+    }
+
+    /** Starts indexing the cells that set() makes FLOOR, so takeFloor can
+     *  draw one directly. Call it while the grid is still empty. */
+    public void trackFloors() {
+        floors = new FloorIndex(tiles.length);
+    }
+
+    /** Stops indexing FLOOR cells. */
+    public void releaseFloors() {
+        floors = null;
+    }
+
+    /** Returns a uniformly random FLOOR cell drawn with RANDOM, packed as
+     *  x * height() + y, and stops offering it; returns -1 if no FLOOR cell
+     *  is left. Needs trackFloors(). */
+    public int takeFloor(Random random) {
+        return floors.take(random, tiles);
+    }
+
+    /** Returns whether every cell in [X0, X1] by [Y0, Y1] is NOTHING, in
+     *  one word test per column for ranges under 64 cells tall, so in time
+     *  proportional to X1 - X0. An empty range is trivially empty. */
+    public boolean isEmpty(int x0, int y0, int x1, int y1) {
+        if (occupancy == null) {
+            occupancy = new OccupancyIndex(width, height);
+            for (int k = 0; k < tiles.length; k++) {
+                if (tiles[k] != NOTHING) {
+                    occupancy.set(k / height, k % height, true);
+                }
+            }
+        }
+        return occupancy.isEmpty(x0, y0, x1, y1);
+    }
+
+    /** Drops the occupancy index until the next isEmpty query. Generation
+     *  calls this once it is done so finished worlds stay compact. */
+    public void releaseIndex() {
+        occupancy = null;
+    }
+
+    /** Returns the Tileset tile at (X, Y). */
+    public TETile tile(int x, int y) {
+        return PALETTE[get(x, y)];
+    }
+
+    /** Returns whether (X, Y) lies inside the grid. */
+    public boolean inBounds(int x, int y) {
+        return x >= 0 && x < width && y >= 0 && y < height;
+    }
+
+    /** Resets every cell to NOTHING. */
+    public void clear() {
+        Arrays.fill(tiles, NOTHING);
+        zobrist = 0;
+        occupancy = null;
+        floors = null;
+        walkVersion += 1;
+    }
+
+    /** Returns whether OTHER has the same dimensions and tile ids. */
+    public boolean sameTiles(WorldGrid other) {
+        return width == other.width && height == other.height
+                && Arrays.equals(tiles, other.tiles);
+    }
+
+    /** Returns the cells where this grid differs from BASE, a grid of the
+     *  same size, as consecutive (index, id) pairs holding this grid's ids.
+     *  Indices are x * height + y. */
+    public int[] diffFrom(WorldGrid base) {
+        if (width != base.width || height != base.height) {
+            throw new IllegalArgumentException("grids differ in size");
+        }
+        int count = 0;
+        for (int k = 0; k < tiles.length; k++) {
+            if (tiles[k] != base.tiles[k]) {
+                count += 1;
+            }
+        }
+        int[] rv = new int[count * 2];
+        int i = 0;
+        for (int k = 0; k < tiles.length; k++) {
+            if (tiles[k] != base.tiles[k]) {
+                rv[i] = k;
+                rv[i + 1] = tiles[k];
+                i += 2;
+            }
+        }
+        return rv;
+    }
+
+    /** Sets the cells listed in DIFF, as returned by diffFrom. */
+    public void apply(int[] diff) {
+        for (int i = 0; i < diff.length; i += 2) {
+            int k = diff[i];
+            set(k / height, k % height, (byte) diff[i + 1]);
+        }
+    }
+
+    /** Returns a hash of the tile ids, consistent with sameTiles. */
+    public int tileHash() {
+        return Arrays.hashCode(tiles);
+    }
+
+    /** Returns a 64-bit FNV-1a hash of the dimensions and tile ids, for
+     *  comparing worlds where an int hash would collide too often. */
+    public long contentHash() {
+        long h = 0xCBF29CE484222325L;
+        h = (h ^ width) * 0x100000001B3L;
+        h = (h ^ height) * 0x100000001B3L;
+        for (byte b : tiles) {
+            h = (h ^ b) * 0x100000001B3L;
+        }
+        return h;
+    }
+
+    /** Returns the Zobrist hash of the tile ids. Unlike contentHash it
+     *  costs nothing to ask for, as every set() updates it in constant time.
+     *  Grids with the same ids have the same hash. */
+    public long zobristHash() {
+        return zobrist;
+    }
+
+    /** Returns the Zobrist key of id ID in the cell at index K. NOTHING has
+     *  key 0, so an empty grid hashes to 0. */
+    private static long key(int k, byte id) {
+        return id == NOTHING ? 0 : SplitMix64.mix((long) k << 3 | id);
+    }
+
+    /** Restores the transient hash of a grid read back from a stream. */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        for (int k = 0; k < tiles.length; k++) {
+            zobrist ^= key(k, tiles[k]);
+        }
+    }
+
+    /** Returns the Tileset tile that ID stands for. */
+    public static TETile tileOf(byte id) {
+        return PALETTE[id];
+    }
+
+    /** Returns the id of TILE, which must be one of the palette tiles. */
+    public static byte idOf(TETile tile) {
+        for (byte i = 0; i < PALETTE.length; i++) {
+            if (PALETTE[i].equals(tile)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("tile not in palette: " + tile.description());
+    }
+
+    /** Returns a grid holding TILES, whose tiles must look like palette
+     *  tiles. Tiles are matched by description, as those read back from a
+     *  save are copies rather than the Tileset tiles themselves. */
+    public static WorldGrid fromTiles(TETile[][] tiles) {
+        WorldGrid rv = new WorldGrid(tiles.length, tiles[0].length);
+        for (int x = 0; x < rv.width; x++) {
+            for (int y = 0; y < rv.height; y++) {
+                rv.set(x, y, idByDescription(tiles[x][y]));
+            }
+        }
+        return rv;
+    }
+
+    /** Returns the id of the palette tile with the description of TILE. */
+    private static byte idByDescription(TETile tile) {
+        for (byte i = 0; i < PALETTE.length; i++) {
+            if (PALETTE[i].description().equals(tile.description())) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("tile not in palette: " + tile.description());
+    }
+
+    /** Returns a fresh TETile[][] holding the same tiles as this grid. */
+    public TETile[][] toTiles() {
+        TETile[][] rv = new TETile[width][height];
+        int k = 0;
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                rv[x][y] = PALETTE[tiles[k]];
+                k += 1;
+            }
+        }
+        return rv;
+    }
+
+    /** Same layout as TETile.toString, without building the TETile[][] first. */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder((width + 1) * height);
+        for (int y = height - 1; y >= 0; y -= 1) {
+            for (int x = 0; x < width; x += 1) {
+                sb.append(PALETTE[get(x, y)].character());
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,124 @@
+package byow.Core;
+
+/**
+ * The xoshiro256** generator: 256 bits of state, period 2^256 - 1, and
+ * jump functions that skip 2^128 or 2^192 draws, so a single seed can feed
+ * many threads with streams that never overlap.
+ * <p>
+ * Algorithm by Blackman and Vigna, "Scrambled Linear Pseudorandom Number
+ * Generators" (ACM TOMS 2021).
+ */
+public class Xoshiro256StarStar extends Prng {
+    /** Polynomial for jump(): advances 2^128 draws. */
+    private static final long[] JUMP = {
+        0x180EC6D33CFD0ABAL, 0xD5A61266F0C9392CL, 0xA9582618E03FC9AAL, 0x39ABDC4529B1661CL
+    };
+    /** Polynomial for longJump(): advances 2^192 draws. */
+    private static final long[] LONG_JUMP = {
+        0x76E15D3EFEFDCBBFL, 0xC5004E441C522FB3L, 0x77710069854EE241L, 0x39109BB02ACBE635L
+    };
+
+    /* State words. Set by setSeed, which Random's constructor calls, so they
+     * must not have initializers. */
+    private long s0;
+    private long s1;
+    private long s2;
+    private long s3;
+
+    /**
+     * Creates a generator whose state is filled from {@code seed} with
+     * SplitMix64, as the authors recommend.
+     *
+     * @param seed the seed
+     */
+    public Xoshiro256StarStar(long seed) {
+        super(seed);
+    }
+
+    /**
+     * Creates a generator with the given state, which must not be all zero.
+     *
+     * @throws IllegalArgumentException if every word is zero
+     */
+    Xoshiro256StarStar(long s0, long s1, long s2, long s3) {
+        super(0);
+        if ((s0 | s1 | s2 | s3) == 0) {
+            throw new IllegalArgumentException("state must not be all zero");
+        }
+        this.s0 = s0;
+        this.s1 = s1;
+        this.s2 = s2;
+        this.s3 = s3;
+    }
+
+    @Override
+    public void setSeed(long seed) {
+        SplitMix64 seeder = new SplitMix64(seed);
+        s0 = seeder.nextLong();
+        s1 = seeder.nextLong();
+        s2 = seeder.nextLong();
+        s3 = seeder.nextLong();
+        discardGaussian();
+    }
+
+    @Override
+    public long nextLong() {
+        long result = Long.rotateLeft(s1 * 5, 7) * 9;
+        long t = s1 << 17;
+        s2 ^= s0;
+        s3 ^= s1;
+        s1 ^= s2;
+        s0 ^= s3;
+        s2 ^= t;
+        s3 = Long.rotateLeft(s3, 45);
+        return result;
+    }
+
+    /**
+     * Returns a copy of this generator and then jumps this one ahead by 2^128
+     * draws, so the copy owns the next 2^128 values of the stream.
+     *
+     * @return a new, independent generator
+     */
+    @Override
+    public Xoshiro256StarStar split() {
+        Xoshiro256StarStar rv = new Xoshiro256StarStar(s0, s1, s2, s3);
+        jump();
+        return rv;
+    }
+
+    /** Advances this generator by 2^128 draws. */
+    @Override
+    public void jump() {
+        jump(JUMP);
+    }
+
+    /** Advances this generator by 2^192 draws, for handing out groups of
+     *  streams that are each split further with jump(). */
+    public void longJump() {
+        jump(LONG_JUMP);
+    }
+
+    /** Advances the state by the jump polynomial POLY. */
+    private void jump(long[] poly) {
+        long t0 = 0;
+        long t1 = 0;
+        long t2 = 0;
+        long t3 = 0;
+        for (long word : poly) {
+            for (int b = 0; b < 64; b++) {
+                if ((word & (1L << b)) != 0) {
+                    t0 ^= s0;
+                    t1 ^= s1;
+                    t2 ^= s2;
+                    t3 ^= s3;
+                }
+                nextLong();
+            }
+        }
+        s0 = t0;
+        s1 = t1;
+        s2 = t2;
+        s3 = t3;
+    }
+}
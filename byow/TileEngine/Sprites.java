@@ -0,0 +1,215 @@
+package byow.TileEngine;
+
+import edu.princeton.cs.algs4.StdDraw;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.HashMap;
+import java.util.Map;
+import javax.imageio.ImageIO;
+
+/**
+ * The images of tiles, each decoded once and drawn from memory.
+ *
+ * The first time a file is asked for, it is read with ImageIO, from the working directory or
+ * else the classpath as StdDraw would look for it, and copied into a region of one shared atlas
+ * image. A file that is missing or cannot be decoded is remembered as missing and never looked
+ * for again, so tiles whose images are absent cost no more than plain character tiles.
+ *
+ * StdDraw only draws images it is given the name of, so a region is copied straight onto
+ * StdDraw's offscreen canvas, which is reached by reflection. If that is not possible with the
+ * StdDraw in use, images are drawn with StdDraw.picture instead, and an image that StdDraw then
+ * rejects is also remembered as missing. A region can also be copied onto any other canvas,
+ * which needs no StdDraw at all. All of this happens on the thread that draws.
+ */
+public final class Sprites {
+    /** Width of the atlas, unless an image is wider. */
+    private static final int ATLAS_WIDTH = 256;
+
+    /** Regions of the files asked for so far, including missing ones. */
+    private static final Map<String, Region> REGIONS = new HashMap<>();
+    /** Image holding every decoded file. */
+    private static BufferedImage atlas = new BufferedImage(ATLAS_WIDTH, 64,
+            BufferedImage.TYPE_INT_ARGB);
+    /** Left edge of the free space on the current shelf of the atlas. */
+    private static int shelfX;
+    /** Top of the current shelf. */
+    private static int shelfY;
+    /** Height of the tallest image on the current shelf. */
+    private static int shelfHeight;
+
+    /** StdDraw's offscreen canvas, its coordinate conversions and whether it
+     *  defers showing, or nulls if they cannot be reached. */
+    private static final MethodHandle OFFSCREEN;
+    private static final MethodHandle SCALE_X;
+    private static final MethodHandle SCALE_Y;
+    private static final MethodHandle DEFER;
+
+    static {
+        MethodHandle offscreen = null;
+        MethodHandle scaleX = null;
+        MethodHandle scaleY = null;
+        MethodHandle defer = null;
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(StdDraw.class,
+                    MethodHandles.lookup());
+            MethodType scale = MethodType.methodType(double.class, double.class);
+            offscreen = lookup.findStaticGetter(StdDraw.class, "offscreen", Graphics2D.class);
+            scaleX = lookup.findStatic(StdDraw.class, "scaleX", scale);
+            scaleY = lookup.findStatic(StdDraw.class, "scaleY", scale);
+            defer = lookup.findStaticGetter(StdDraw.class, "defer", boolean.class);
+        } catch (ReflectiveOperationException | RuntimeException excp) {
+            offscreen = null;
+        }
+        OFFSCREEN = offscreen;
+        SCALE_X = scaleX;
+        SCALE_Y = scaleY;
+        DEFER = defer;
+    }
+
+    private Sprites() {
+    }
+
+    /** The place of one file's image in the atlas. */
+    static final class Region {
+        /** Region of a file that is missing or cannot be drawn. */
+        private static final Region MISSING = new Region(null, 0, 0, 0, 0);
+
+        /** File the image was read from. */
+        private final String file;
+        /** Top left corner and size in the atlas. */
+        private final int x;
+        private final int y;
+        private final int width;
+        private final int height;
+        /** Whether the image turned out not to be drawable. */
+        private boolean missing;
+
+        private Region(String file, int x, int y, int width, int height) {
+            this.file = file;
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+            this.missing = file == null;
+        }
+
+        /** Returns whether there is an image to draw. */
+        boolean exists() {
+            return !missing;
+        }
+    }
+
+    /** Returns the region of the image in FILE, decoding it into the atlas
+     *  the first time it is asked for. */
+    static Region region(String file) {
+        Region rv = REGIONS.get(file);
+        if (rv == null) {
+            BufferedImage image = decode(file);
+            rv = image == null ? Region.MISSING : pack(file, image);
+            REGIONS.put(file, rv);
+        }
+        return rv;
+    }
+
+    /** Draws the image of REGION centered at (X, Y) in StdDraw's coordinates,
+     *  at its own size, as StdDraw.picture would. Returns false, drawing
+     *  nothing, if there is no image. */
+    static boolean draw(Region region, double x, double y) {
+        if (!region.exists()) {
+            return false;
+        }
+        if (OFFSCREEN == null) {
+            try {
+                StdDraw.picture(x, y, region.file);
+                return true;
+            } catch (IllegalArgumentException excp) {
+                region.missing = true;
+                return false;
+            }
+        }
+        try {
+            Graphics2D canvas = (Graphics2D) OFFSCREEN.invokeExact();
+            draw(region, canvas, (double) SCALE_X.invokeExact(x), (double) SCALE_Y.invokeExact(y));
+            if (!(boolean) DEFER.invokeExact()) {
+                StdDraw.show();
+            }
+        } catch (Throwable excp) {
+            throw new IllegalStateException(excp);
+        }
+        return true;
+    }
+
+    /** Draws the image of REGION onto CANVAS, centered at pixel (X, Y), at
+     *  its own size. Returns false, drawing nothing, if there is no image. */
+    static boolean draw(Region region, Graphics2D canvas, double x, double y) {
+        if (!region.exists()) {
+            return false;
+        }
+        int left = (int) Math.round(x - region.width / 2.0);
+        int top = (int) Math.round(y - region.height / 2.0);
+        canvas.drawImage(atlas, left, top, left + region.width, top + region.height,
+                region.x, region.y, region.x + region.width, region.y + region.height, null);
+        return true;
+    }
+
+    /** Returns the image in FILE, or null if it is missing or cannot be
+     *  decoded. */
+    private static BufferedImage decode(String file) {
+        try {
+            File onDisk = new File(file);
+            if (onDisk.isFile()) {
+                return ImageIO.read(onDisk);
+            }
+            InputStream resource = StdDraw.class.getResourceAsStream(
+                    file.startsWith("/") ? file : "/" + file);
+            if (resource == null) {
+                return null;
+            }
+            try (InputStream in = resource) {
+                return ImageIO.read(in);
+            }
+        } catch (IOException | RuntimeException excp) {
+            return null;
+        }
+    }
+
+    /** Copies IMAGE, read from FILE, into free space in the atlas, growing
+     *  the atlas if there is none, and returns where it went. */
+    private static Region pack(String file, BufferedImage image) {
+        int w = image.getWidth();
+        int h = image.getHeight();
+        if (shelfX + w > atlas.getWidth()) {
+            shelfY += shelfHeight;
+            shelfX = 0;
+            shelfHeight = 0;
+        }
+        if (w > atlas.getWidth() || shelfY + h > atlas.getHeight()) {
+            int width = Math.max(atlas.getWidth(), w);
+            int height = atlas.getHeight();
+            while (shelfY + h > height) {
+                height *= 2;
+            }
+            BufferedImage grown = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = grown.createGraphics();
+            g.drawImage(atlas, 0, 0, null);
+            g.dispose();
+            atlas = grown;
+        }
+        Graphics2D g = atlas.createGraphics();
+        g.setComposite(AlphaComposite.Src);
+        g.drawImage(image, shelfX, shelfY, null);
+        g.dispose();
+        Region rv = new Region(file, shelfX, shelfY, w, h);
+        shelfX += w;
+        shelfHeight = Math.max(shelfHeight, h);
+        return rv;
+    }
+}
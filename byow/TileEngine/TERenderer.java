@@ -4,6 +4,9 @@ import edu.princeton.cs.algs4.StdDraw;
 
 import java.awt.Color;
 import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
 import java.io.Serializable;
 import java.util.ArrayList;
 
@@ -14,11 +17,22 @@ import java.util.ArrayList;
  * allowing scrolling of the screen or tracking the avatar or something similar.
  */
 public class TERenderer implements Serializable {
+    // Kept at the value of the first saved renderer, which saved games hold.
+    private static final long serialVersionUID = -270927577726385214L;
     private static final int TILE_SIZE = 16;
     private int width;
     private int height;
     private int xOffset;
     private int yOffset;
+    /** The tile each cell of the world shows since the last frame, or null
+     *  where it shows only black; null itself until the next frame draws
+     *  everything. */
+    private transient TETile[][] shown;
+    /** Whether the last frame was drawn with line of sight. */
+    private transient boolean shownLineOfSight;
+    /** The canvas of the image frames are drawn into, or null when they are
+     *  drawn with StdDraw. */
+    private transient Graphics2D target;
 
     /**
      * Same functionality as the other initialization method. The only difference is that the xOff
@@ -34,6 +48,7 @@ public class TERenderer implements Serializable {
         this.height = h;
         this.xOffset = xOff;
         this.yOffset = yOff;
+        this.target = null;
         StdDraw.setCanvasSize(width * TILE_SIZE, height * TILE_SIZE);
         Font font = new Font("Monaco", Font.BOLD, TILE_SIZE - 2);
         StdDraw.setFont(font);      
@@ -44,6 +59,7 @@ public class TERenderer implements Serializable {
 
         StdDraw.enableDoubleBuffering();
         StdDraw.show();
+        shown = null;
     }
 
     /**
@@ -63,6 +79,37 @@ public class TERenderer implements Serializable {
         initialize(w, h, 0, 0);
     }
 
+    /**
+     * Like initialize(w, h), but renderFrame then draws into the returned image instead of the
+     * StdDraw window, so no window is opened and no display is needed.
+     * @param w width of the image in tiles
+     * @param h height of the image in tiles.
+     * @return the image frames are drawn into
+     */
+    public BufferedImage initializeOffscreen(int w, int h) {
+        this.width = w;
+        this.height = h;
+        this.xOffset = 0;
+        this.yOffset = 0;
+        BufferedImage image = new BufferedImage(width * TILE_SIZE, height * TILE_SIZE,
+                BufferedImage.TYPE_INT_ARGB);
+        target = image.createGraphics();
+        target.setFont(new Font("Monaco", Font.BOLD, TILE_SIZE - 2));
+        target.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                RenderingHints.VALUE_ANTIALIAS_ON);
+        fillBlack(0, 0, width, height);
+        shown = null;
+        return image;
+    }
+
+    /**
+     * Makes the next renderFrame draw every tile again. Call it after drawing anything
+     * over the world other than through renderFrame, such as a full-screen image.
+     */
+    public void invalidate() {
+        shown = null;
+    }
+
     /**
      * Takes in a 2d array of TETile objects and renders the 2d array to the screen, starting from
      * xOffset and yOffset.
@@ -86,46 +133,87 @@ public class TERenderer implements Serializable {
      * @param world the 2D TETile[][] array to render
      */
     public void renderFrame(TETile[][] world, int playerX, int playerY, boolean lineOfSight) {
-        if (lineOfSight) {
-            lineOfSightRender(world, playerX, playerY);
-            return;
+        int numXTiles = world.length;
+        int numYTiles = world[0].length;
+        // Draws everything when the last frame is unknown or everything may look different,
+        // and otherwise only the cells that changed, plus a blank space around the world
+        if (shown == null || lineOfSight != shownLineOfSight
+                || shown.length != numXTiles || shown[0].length != numYTiles) {
+            if (target == null) {
+                StdDraw.clear(new Color(0, 0, 0));
+            } else {
+                fillBlack(0, 0, width, height);
+            }
+            shown = new TETile[numXTiles][numYTiles];
+            shownLineOfSight = lineOfSight;
         } else {
-            int numXTiles = world.length;
-            int numYTiles = world[0].length;
-            StdDraw.clear(new Color(0, 0, 0));
-            for (int x = 0; x < numXTiles; x += 1) {
-                for (int y = 0; y < numYTiles; y += 1) {
-                    if (world[x][y] == null) {
+            clearAround(numXTiles, numYTiles);
+        }
+        for (int x = 0; x < numXTiles; x += 1) {
+            for (int y = 0; y < numYTiles; y += 1) {
+                TETile tile = null;
+                if (!lineOfSight || (x >= playerX - 3 && x < playerX + 3
+                        && y >= playerY - 3 && y < playerY + 3)) {
+                    tile = world[x][y];
+                    if (tile == null) {
                         throw new IllegalArgumentException("Tile at position x=" + x + ", y=" + y
                                 + " is null.");
                     }
-                    world[x][y].draw(x + xOffset, y + yOffset);
+                }
+                if (tile != shown[x][y]) {
+                    int left = x + xOffset;
+                    int bottom = y + yOffset;
+                    if (tile == null) {
+                        fillBlack(left, bottom, left + 1, bottom + 1);
+                    } else if (target == null) {
+                        tile.draw(left, bottom);
+                    } else {
+                        tile.draw(target, left * TILE_SIZE, (height - bottom - 1) * TILE_SIZE,
+                                TILE_SIZE);
+                    }
+                    shown[x][y] = tile;
                 }
             }
+        }
+        if (target == null) {
             StdDraw.show();
         }
     }
 
     public void lineOfSightRender(TETile[][] world, int playerX, int playerY) {
-        int numXTiles = world.length;
-        int numYTiles = world[0].length;
-        StdDraw.clear(new Color(0, 0, 0));
-        for (int x = playerX - 3; x < playerX + 3; x += 1) {
-            if (x < 0 || x >= numXTiles) {
-                continue;
-            }
-            for (int y = playerY - 3; y < playerY + 3; y += 1) {
-                if (y < 0 || y >= numYTiles) {
-                    continue;
-                }
-                if (world[x][y] == null) {
-                    throw new IllegalArgumentException("Tile at position x=" + x + ", y=" + y
-                            + " is null.");
-                }
-                world[x][y].draw(x + xOffset, y + yOffset);
-            }
+        renderFrame(world, playerX, playerY, true);
+    }
+
+    /** Blanks the canvas outside the NUMXTILES by NUMYTILES world, where text drawn over
+     *  the last frame would otherwise stay. */
+    private void clearAround(int numXTiles, int numYTiles) {
+        int top = yOffset + numYTiles;
+        int right = xOffset + numXTiles;
+        if (yOffset > 0) {
+            fillBlack(0, 0, width, yOffset);
+        }
+        if (top < height) {
+            fillBlack(0, top, width, height);
+        }
+        if (xOffset > 0) {
+            fillBlack(0, yOffset, xOffset, top);
+        }
+        if (right < width) {
+            fillBlack(right, yOffset, width, top);
+        }
+    }
+
+    /** Paints the tiles from (X0, Y0) up to (X1, Y1) black, counting from the bottom left. */
+    private void fillBlack(int x0, int y0, int x1, int y1) {
+        if (target == null) {
+            StdDraw.setPenColor(Color.BLACK);
+            StdDraw.filledRectangle((x0 + x1) / 2.0, (y0 + y1) / 2.0, (x1 - x0) / 2.0,
+                    (y1 - y0) / 2.0);
+        } else {
+            target.setColor(Color.BLACK);
+            target.fillRect(x0 * TILE_SIZE, (height - y1) * TILE_SIZE, (x1 - x0) * TILE_SIZE,
+                    (y1 - y0) * TILE_SIZE);
         }
-        StdDraw.show();
     }
 
 }
@@ -1,6 +1,8 @@
 package byow.TileEngine;
 
 import java.awt.Color;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
 import java.util.Arrays;
 import java.util.Random;
 import java.io.Serializable;
@@ -28,6 +30,7 @@ public class TETile implements Serializable {
     private final Color backgroundColor;
     private final String description;
     private final String filepath;
+    private transient Sprites.Region sprite; // Image of filepath, looked up on the first draw.
 
     /**
      * Full constructor for TETile objects.
@@ -75,7 +78,8 @@ public class TETile implements Serializable {
     /**
      * Draws the tile to the screen at location x, y. If a valid filepath is provided,
      * we draw the image located at that filepath to the screen. Otherwise, we fall
-     * back to the character and color representation for the tile.
+     * back to the character and color representation for the tile. The image is
+     * decoded once, by Sprites, and a file that can't be found is not looked for again.
      *
      * Note that the image provided must be of the right size (16x16). It will not be
      * automatically resized or truncated.
@@ -84,12 +88,11 @@ public class TETile implements Serializable {
      */
     public void draw(double x, double y) {
         if (filepath != null) {
-            try {
-                StdDraw.picture(x + 0.5, y + 0.5, filepath);
+            if (sprite == null) {
+                sprite = Sprites.region(filepath);
+            }
+            if (Sprites.draw(sprite, x + 0.5, y + 0.5)) {
                 return;
-            } catch (IllegalArgumentException e) {
-                // Exception happens because the file can't be found. In this case, fail silently
-                // and just use the character and background color for the tile.
             }
         }
 
@@ -99,6 +102,33 @@ public class TETile implements Serializable {
         StdDraw.text(x + 0.5, y + 0.5, Character.toString(character()));
     }
 
+    /**
+     * Draws the tile onto a canvas of your own instead of StdDraw's, as the SIZE pixel square
+     * whose top left corner is (LEFT, TOP), using the canvas's font for the character.
+     * @param canvas the canvas to draw onto
+     * @param left the x-coordinate of the left edge, in pixels
+     * @param top the y-coordinate of the top edge, in pixels
+     * @param size the side length of the tile, in pixels
+     */
+    public void draw(Graphics2D canvas, int left, int top, int size) {
+        if (filepath != null) {
+            if (sprite == null) {
+                sprite = Sprites.region(filepath);
+            }
+            if (Sprites.draw(sprite, canvas, left + size / 2.0, top + size / 2.0)) {
+                return;
+            }
+        }
+
+        canvas.setColor(backgroundColor);
+        canvas.fillRect(left, top, size, size);
+        canvas.setColor(textColor);
+        String text = Character.toString(character());
+        FontMetrics metrics = canvas.getFontMetrics();
+        canvas.drawString(text, (float) (left + (size - metrics.stringWidth(text)) / 2.0),
+                (float) (top + size / 2.0 + metrics.getDescent()));
+    }
+
     /** Character representation of the tile. Used for drawing in text mode.
      * @return character representation
      */